@@ -1,12 +1,21 @@
 package joshua.green.Datacenters;
 
+import joshua.green.GenerationForecastIndex;
+import joshua.green.HostCapacityIndex;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.cloudsimplus.allocationpolicies.VmAllocationPolicy;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimTag;
 import org.cloudsimplus.core.Simulation;
+import org.cloudsimplus.core.events.SimEvent;
 import org.cloudsimplus.datacenters.DatacenterSimple;
 import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.CloudletVmEventInfo;
+import org.cloudsimplus.listeners.EventListener;
 import org.cloudsimplus.resources.DatacenterStorage;
+import org.cloudsimplus.vms.Vm;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +25,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -26,25 +36,50 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class DatacenterGreenAware extends DatacenterSimple {
     private static final Logger LOGGER = LoggerFactory.getLogger(DatacenterGreenAware.class);
 
-    // 能源状态变量（使用同步保护）
-    private volatile double greenEnergy; // 当前绿色能源库存（焦耳）
-    private volatile double cumulativeSurplus; // 累积盈余
+    // 能源账本（使用同步保护）：库存、绿/棕能源使用量、盈余
+    @Getter(AccessLevel.NONE)
+    private final EnergyAccount ledger;
 
     // 风能生成数据
     private final TreeMap<Double, Double> greenGenerationMap = new TreeMap<>(); // 仿真时间(秒) -> 功率(瓦特)
     private String greenProfileCsvPath; // 风电数据文件路径
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private GenerationForecastIndex forecastIndex = // 前缀和索引：O(1) 区间发电量与多时段预测
+            new GenerationForecastIndex(new double[0], WIND_DATA_INTERVAL, GenerationForecastIndex.Interpolation.LINEAR);
 
     // 常量配置
     private static final double WIND_DATA_INTERVAL = 600.0; // 风能数据间隔（秒）
     private static final double ENERGY_UPDATE_THRESHOLD = 0.01; // 能源更新阈值（秒）
     private static final double ENERGY_BALANCE_TOLERANCE = 0.01; // 能源平衡容差（焦耳）
-
-    // 统计变量
-    private volatile double lastTickGreenGeneration = 0;     // 上个tick的绿色能源生成（焦耳）
-    private volatile double lastTickTotalEnergyUsed = 0;     // 上个tick的总能源消耗（焦耳）
-    private volatile double lastTickSurplus = 0;             // 上个tick的盈余
-    private volatile double lastTickBrownUsed = 0;           // 上个tick的棕色能源使用（焦耳）
-
+    private static final int GREEN_GENERATION_EVENT = 97000; // 自定义事件标签：风能数据采样点边界
+    private static final double STOCK_EPSILON = 1e-3;        // 判断库存耗尽的容差（焦耳）
+
+    // 账本结算模式
+    private LedgerMode ledgerMode = LedgerMode.LAZY;
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private EnergyAccount eagerShadow;                       // VERIFY 模式下的即时结算影子账本
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private double ledgerPowerDraw = 0;                      // 当前分段的功率（瓦特）
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private boolean powerDrawDirty = true;                   // VM/任务启停后功率需要重新采样
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private double lastHostUpdateTime = 0;                   // 上次主机处理更新时间
+    @Setter(AccessLevel.NONE)
+    private long ledgerSettlements = 0;                      // 账本结算次数
+    @Setter(AccessLevel.NONE)
+    private long ledgerMismatches = 0;                       // VERIFY 模式下与即时结算不一致的次数
+
+    // 多数据中心共享账本（可选，可同时加入全局账本和区域账本）
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private FleetEnergyLedger[] fleetLedgers = new FleetEnergyLedger[0];
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private int[] fleetSlots = new int[0];
+    @Getter(AccessLevel.NONE)
+    private final EventListener<CloudletVmEventInfo> powerChangeListener = info -> markPowerDrawDirty();
+
+    // 主机剩余容量索引（首次使用时建立，VM创建/销毁/迁移时增量更新）
+    @Setter(AccessLevel.NONE)
+    private HostCapacityIndex hostCapacityIndex;
 
     // 配置参数
     private double generationScalingFactor = 1.0;            // 生成缩放因子
@@ -52,24 +87,111 @@ public class DatacenterGreenAware extends DatacenterSimple {
 
     // 累积统计
     private volatile double totalGenerated = 0;              // 总生成量（焦耳）
-    private volatile double totalGreenUsed = 0;              // 总绿色能源使用量（焦耳）
-    private volatile double totalBrownUsed = 0;              // 总棕色能源使用量（焦耳）
 
-    // 时间跟踪（统一管理）
-    private volatile double lastEnergyUpdateTime = 0;        // 上次能源更新时间
-    private volatile double lastGenerationUpdateTime = 0;    // 上次生成更新时间
+    // 时间跟踪
+    private volatile double lastGenerationUpdateTime = 0;    // 上次生成结算时间
 
     // 同步锁
     private final Object energyLock = new Object();
 
     // 调度标志
     private final AtomicBoolean energyGenerationScheduled = new AtomicBoolean(false);
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private boolean generationEventPending = false;          // 是否已有待处理的采样点事件
+    @Setter(AccessLevel.NONE)
+    private long generationEventCount = 0;                   // 已处理的采样点事件数
 
     // 验证和调试
     private boolean enableEnergyValidation = true;           // 是否启用能源平衡验证
     private long validationCounter = 0;                      // 验证计数器
     private static final long VALIDATION_INTERVAL = 100;     // 验证间隔
 
+    /**
+     * 账本结算模式
+     */
+    public enum LedgerMode {
+        EAGER,  // 每次主机处理更新都采样功率并结算（原始方式）
+        LAZY,   // 只在功率变化（VM/任务启停）后重新采样功率，主机更新和读取时用缓存功率结算
+        VERIFY  // 按即时结算的时间点结算惰性账本，并与影子账本逐位比较
+    }
+
+    /**
+     * 能源账本：主账本与影子账本使用同一套结算算术，保证结果可逐位比较
+     */
+    private static final class EnergyAccount {
+        double stock;                      // 绿色能源库存（焦耳）
+        double totalGreenUsed = 0;         // 总绿色能源使用量（焦耳）
+        double totalBrownUsed = 0;         // 总棕色能源使用量（焦耳）
+        double cumulativeSurplus = 0;      // 累积盈余
+        double lastTickGreenGeneration = 0; // 上次主机更新区间的绿色能源生成（焦耳）
+        double lastTickTotalEnergyUsed = 0; // 上次主机更新区间的总能源消耗（焦耳）
+        double lastTickSurplus = 0;        // 上次主机更新区间的盈余
+        double lastTickBrownUsed = 0;      // 上次主机更新区间的棕色能源使用（焦耳）
+        // 当前区间已结算部分的累计（读取触发的结算只累加到这里，由主机更新结算统一收尾）
+        double openGreenGeneration = 0;
+        double openTotalEnergyUsed = 0;
+        double openBrownUsed = 0;
+        double settledTime = 0;            // 已结算到的时间
+        double generatedAtSettle = 0;      // 上次结算时的总生成量（焦耳）
+
+        EnergyAccount(double initialStock) {
+            this.stock = initialStock;
+        }
+
+        /**
+         * 以恒定功率结算 (settledTime, time] 区间的消耗
+         * @param totalGenerated 截至 time 的总发电量（焦耳）
+         */
+        void settle(double time, double powerWatts, double totalGenerated) {
+            double interval = time - settledTime;
+
+            // 本区间内的发电量
+            double generated = totalGenerated - generatedAtSettle;
+            generatedAtSettle = totalGenerated;
+
+            // 1. 计算能源消耗
+            double energyConsumed = powerWatts * interval;
+
+            // 2. 确定使用多少绿色能源和棕色能源
+            double greenUsed = Math.min(energyConsumed, Math.max(stock, 0));
+            double brownUsed = energyConsumed - greenUsed;
+
+            // 3. 更新能源余额和统计
+            stock = Math.max(0, stock - greenUsed);
+            totalGreenUsed += greenUsed;
+            totalBrownUsed += brownUsed;
+
+            // 4. 计算surplus（基于同一区间内的生成和消耗）
+            cumulativeSurplus += generated - energyConsumed;
+
+            openGreenGeneration += generated;
+            openTotalEnergyUsed += energyConsumed;
+            openBrownUsed += brownUsed;
+
+            settledTime = time;
+        }
+
+        /**
+         * 主机更新结算后收尾当前区间：区间内所有结算分段合并为 lastTick 值
+         */
+        void closeTick() {
+            lastTickGreenGeneration = openGreenGeneration;
+            lastTickTotalEnergyUsed = openTotalEnergyUsed;
+            lastTickBrownUsed = openBrownUsed;
+            lastTickSurplus = openGreenGeneration - openTotalEnergyUsed;
+            openGreenGeneration = 0;
+            openTotalEnergyUsed = 0;
+            openBrownUsed = 0;
+        }
+
+        boolean sameAs(EnergyAccount other) {
+            return stock == other.stock
+                    && totalGreenUsed == other.totalGreenUsed
+                    && totalBrownUsed == other.totalBrownUsed
+                    && cumulativeSurplus == other.cumulativeSurplus;
+        }
+    }
+
     /**
      * 主构造函数
      */
@@ -77,7 +199,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
                                 VmAllocationPolicy vmAllocationPolicy, double initialGreenKWh, String filePath) {
         super(simulation, hostList, vmAllocationPolicy);
         this.initialGreenEnergy = initialGreenKWh * 3600000; // kWh转换为焦耳
-        this.greenEnergy = this.initialGreenEnergy;
+        this.ledger = new EnergyAccount(this.initialGreenEnergy);
         this.greenProfileCsvPath = filePath;
         initializeDatacenter();
     }
@@ -88,7 +210,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
     public DatacenterGreenAware(Simulation simulation, VmAllocationPolicy vmAllocationPolicy, double greenEnergyKWh) {
         super(simulation, vmAllocationPolicy);
         this.initialGreenEnergy = greenEnergyKWh * 3600000;
-        this.greenEnergy = this.initialGreenEnergy;
+        this.ledger = new EnergyAccount(this.initialGreenEnergy);
         this.greenProfileCsvPath = "/Users/joshua/Downloads/Turbine_1_2021.csv";
         initializeDatacenter();
     }
@@ -100,7 +222,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
                                 VmAllocationPolicy vmAllocationPolicy, double greenEnergyKWh) {
         super(simulation, hostList, vmAllocationPolicy);
         this.initialGreenEnergy = greenEnergyKWh * 3600000;
-        this.greenEnergy = this.initialGreenEnergy;
+        this.ledger = new EnergyAccount(this.initialGreenEnergy);
         this.greenProfileCsvPath = "/Users/joshua/Downloads/Turbine_1_2021.csv";
         initializeDatacenter();
     }
@@ -112,7 +234,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
                                 VmAllocationPolicy vmAllocationPolicy, DatacenterStorage storage, double greenEnergyKWh) {
         super(simulation, hostList, vmAllocationPolicy, storage);
         this.initialGreenEnergy = greenEnergyKWh * 3600000;
-        this.greenEnergy = this.initialGreenEnergy;
+        this.ledger = new EnergyAccount(this.initialGreenEnergy);
         this.greenProfileCsvPath = "/Users/joshua/Downloads/Turbine_1_2021.csv";
         initializeDatacenter();
     }
@@ -123,7 +245,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
     public DatacenterGreenAware(Simulation simulation, List<? extends Host> hostList, double greenEnergyKWh) {
         super(simulation, hostList);
         this.initialGreenEnergy = greenEnergyKWh * 3600000;
-        this.greenEnergy = this.initialGreenEnergy;
+        this.ledger = new EnergyAccount(this.initialGreenEnergy);
         this.greenProfileCsvPath = "/Users/joshua/Downloads/Turbine_1_2021.csv";
         initializeDatacenter();
     }
@@ -137,63 +259,208 @@ public class DatacenterGreenAware extends DatacenterSimple {
             LOGGER.warn("Failed to load wind energy profile, using zero generation");
         }
 
-        // 然后调度能源生成
-        scheduleEnergyGeneration();
-
         LOGGER.info("DatacenterGreenAware {} initialized with {} kWh initial green energy",
                 getId(), initialGreenEnergy / 3600000);
     }
 
+    @Override
+    protected void startInternal() {
+        super.startInternal();
+        scheduleEnergyGeneration();
+    }
+
     /**
-     * 启动独立的能源生成调度
+     * 启动事件驱动的能源生成：只在风能数据采样点边界调度事件，
+     * 两个事件之间的发电量在读取时按线性分段的闭式积分惰性结算
      */
     private void scheduleEnergyGeneration() {
         if (energyGenerationScheduled.compareAndSet(false, true)) {
-            // 注册到simulation的clock tick监听器
-            getSimulation().addOnClockTickListener(evt -> {
-                try {
-                    updateGreenEnergyGeneration();
-                } catch (Exception e) {
-                    LOGGER.error("Error in energy generation update: ", e);
-                }
-            });
+            scheduleNextGenerationEvent();
             LOGGER.debug("Energy generation scheduled for datacenter {}", getId());
         }
     }
 
     /**
-     * 独立的绿色能源生成更新方法
+     * 在下一个采样点调度生成事件（数据结束后功率保持不变，无需再调度）
+     */
+    private void scheduleNextGenerationEvent() {
+        if (generationEventPending) {
+            return;
+        }
+        double now = getSimulation().clock();
+        Double next = greenGenerationMap.higherKey(now);
+        if (next == null) {
+            return;
+        }
+        generationEventPending = true;
+        schedule(next - now, GREEN_GENERATION_EVENT);
+    }
+
+    @Override
+    public void processEvent(SimEvent evt) {
+        if (evt.getTag() == GREEN_GENERATION_EVENT) {
+            processGenerationEvent();
+            return;
+        }
+        // 除周期性处理更新外，其他事件（任务提交、VM创建/销毁/迁移等）都可能改变功率
+        if (evt.getTag() != CloudSimTag.VM_UPDATE_CLOUDLET_PROCESSING) {
+            markPowerDrawDirty();
+        }
+        if (hostCapacityIndex == null) {
+            super.processEvent(evt);
+            return;
+        }
+
+        // 记录事件前后受影响的主机，处理后更新容量索引
+        Host before = null;
+        Host target = null;
+        switch (evt.getTag()) {
+            case CloudSimTag.VM_DESTROY -> {
+                if (evt.getData() instanceof Vm vm) before = vm.getHost();
+            }
+            case CloudSimTag.VM_MIGRATE -> {
+                if (evt.getData() instanceof Map.Entry<?, ?> entry) {
+                    if (entry.getKey() instanceof Vm vm) before = vm.getHost();
+                    if (entry.getValue() instanceof Host host) target = host;
+                }
+            }
+            default -> { }
+        }
+        super.processEvent(evt);
+        switch (evt.getTag()) {
+            case CloudSimTag.VM_CREATE_ACK -> {
+                if (evt.getData() instanceof Vm vm) hostCapacityIndex.update(vm.getHost());
+            }
+            case CloudSimTag.VM_DESTROY, CloudSimTag.VM_MIGRATE -> {
+                hostCapacityIndex.update(before);
+                hostCapacityIndex.update(target);
+            }
+            default -> { }
+        }
+    }
+
+    /**
+     * 主机剩余容量索引（PE/内存/带宽），支持 O(log H) 的 first-fit、best-fit 和可行性查询
+     */
+    public HostCapacityIndex getHostCapacityIndex() {
+        if (hostCapacityIndex == null || hostCapacityIndex.size() != getHostList().size()) {
+            hostCapacityIndex = new HostCapacityIndex(getHostList());
+        }
+        return hostCapacityIndex;
+    }
+
+    /**
+     * 任务完成时功率会变化，注册监听以标记功率需要重新采样
+     */
+    @Override
+    protected boolean processCloudletSubmit(SimEvent evt, boolean ack) {
+        if (evt.getData() instanceof Cloudlet cloudlet) {
+            cloudlet.addOnFinishListener(powerChangeListener);
+        }
+        return super.processCloudletSubmit(evt, ack);
+    }
+
+    /**
+     * 标记功率需要重新采样；共享账本随即停止按旧功率外推（与本数据中心读取时的结算一致）
      */
-    private void updateGreenEnergyGeneration() {
+    private void markPowerDrawDirty() {
+        if (powerDrawDirty) {
+            return;
+        }
+        synchronized (energyLock) {
+            powerDrawDirty = true;
+            publishToFleet();
+        }
+    }
+
+    /**
+     * 采样点事件：结算到当前时间，并在仿真还有其他事件时调度下一个采样点
+     * 发电功率的斜率在采样点改变，共享账本的分段从这里重新开始
+     */
+    private void processGenerationEvent() {
         double currentTime = getSimulation().clock();
+        generationEventPending = false;
+        generationEventCount++;
 
+        try {
+            synchronized (energyLock) {
+                settleEnergyLedger();
+                publishToFleet();
+            }
+        } catch (Exception e) {
+            LOGGER.error("Error in energy generation update: ", e);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(String.format(
+                    "%.2f: DC %d - Wind Generation: %.1f kW | Storage: %.2f J (%.2f kWh)",
+                    currentTime, getId(), getWindPowerAtTime(currentTime) * generationScalingFactor / 1000,
+                    ledger.stock, ledger.stock / 3600000
+            ));
+        }
+
+        // 只剩采样点事件时不再调度，避免让仿真一直运行到数据结束；
+        // 之后若有新的处理发生，updateHostsProcessing 会重新调度
+        if (getSimulation().isThereAnyFutureEvt(e -> e.getTag() != GREEN_GENERATION_EVENT)) {
+            scheduleNextGenerationEvent();
+        }
+    }
+
+    /**
+     * 惰性结算：把上次结算到 currentTime 之间的发电量计入库存
+     */
+    private void settleGreenGeneration(double currentTime) {
         synchronized (energyLock) {
-            // 避免重复处理同一时间点
-            if (currentTime <= lastGenerationUpdateTime + ENERGY_UPDATE_THRESHOLD) {
+            if (currentTime <= lastGenerationUpdateTime) {
                 return;
             }
 
-            // 计算从上次更新到现在的发电量
             double windEnergy = calculateWindEnergy(lastGenerationUpdateTime, currentTime);
-
+            lastGenerationUpdateTime = currentTime;
             if (windEnergy > 0) {
-                // 更新能源库存
-                greenEnergy += windEnergy;
+                ledger.stock += windEnergy;
+                if (eagerShadow != null) {
+                    eagerShadow.stock += windEnergy;
+                }
                 totalGenerated += windEnergy;
-                lastTickGreenGeneration = windEnergy;
+                publishToFleet();
+            }
+        }
+    }
 
-                // 获取当前风电功率用于日志
-                double currentWindPowerKW = getWindPowerAtTime(currentTime) * generationScalingFactor / 1000;
+    /**
+     * 结算到当前仿真时间
+     */
+    private void settleGreenGeneration() {
+        settleGreenGeneration(getSimulation().clock());
+    }
 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug(String.format(
-                            "%.2f: DC %d - Wind Generation: %.1f kW | Generated: %.2f J | Storage: %.2f J (%.2f kWh)",
-                            currentTime, getId(), currentWindPowerKW, windEnergy, greenEnergy, greenEnergy / 3600000
-                    ));
+    /**
+     * 按需结算：LAZY 模式下把账本结算到当前时间，其他模式只结算发电量
+     */
+    private void settleEnergyLedger() {
+        synchronized (energyLock) {
+            double currentTime = getSimulation().clock();
+            if (ledgerMode == LedgerMode.LAZY) {
+                // 功率待重新采样时，只能用旧功率结算到上次主机更新，剩余部分在下次更新时结算
+                double until = powerDrawDirty ? lastHostUpdateTime : currentTime;
+                if (until - ledger.settledTime > ENERGY_UPDATE_THRESHOLD) {
+                    settleLedger(until, ledgerPowerDraw);
                 }
             }
+            settleGreenGeneration(currentTime);
+        }
+    }
 
-            lastGenerationUpdateTime = currentTime;
+    /**
+     * 以给定功率把主账本结算到 time（先结算到同一时间的发电量）
+     */
+    private void settleLedger(double time, double powerWatts) {
+        settleGreenGeneration(time);
+        ledger.settle(time, powerWatts, totalGenerated);
+        publishToFleet();
+        if (enableEnergyValidation && ++ledgerSettlements % VALIDATION_INTERVAL == 0) {
+            validateEnergyBalance();
         }
     }
 
@@ -206,50 +473,21 @@ public class DatacenterGreenAware extends DatacenterSimple {
         double minDelay = Double.MAX_VALUE;
 
         synchronized (energyLock) {
-            // 计算时间间隔
-            double interval = currentTime - lastEnergyUpdateTime;
-
-            if (interval > ENERGY_UPDATE_THRESHOLD) {
-                // 1. 计算数据中心的能源消耗
-                double powerWatts = this.getPowerModel().getPower();
-                double energyConsumed = powerWatts * interval;
-                lastTickTotalEnergyUsed = energyConsumed;
-
-                // 2. 确定使用多少绿色能源和棕色能源
-                double greenUsed = Math.min(energyConsumed, Math.max(greenEnergy, 0));
-                double brownUsed = energyConsumed - greenUsed;
-
-                // 3. 更新能源余额和统计
-                greenEnergy = Math.max(0, greenEnergy - greenUsed);
-                totalGreenUsed += greenUsed;
-                totalBrownUsed += brownUsed;
-                lastTickBrownUsed = brownUsed;
-
-                // 4. 计算surplus（基于实际的生成和消耗）
-                // 注意：生成已经在 updateGreenEnergyGeneration 中处理
-                lastTickSurplus = lastTickGreenGeneration - energyConsumed;
-                cumulativeSurplus += lastTickSurplus;
-
-                // 5. 记录日志
-                if (LOGGER.isInfoEnabled() && interval > 1.0) { // 每秒最多记录一次
-                    LOGGER.info(String.format(
-                            "%.2f: DC %d - Power: %.1f W | Used: %.2f J (green: %.2f J, brown: %.2f J) | " +
-                                    "Storage: %.2f kWh | CPU: %.1f%% | RAM: %.1f%% | Surplus: %.2f J",
-                            currentTime, getId(), powerWatts, energyConsumed, greenUsed, brownUsed,
-                            greenEnergy / 3600000, getCurrentCpuUtilization() * 100,
-                            getCurrentRamUtilization() * 100, lastTickSurplus
-                    ));
-                }
-
-                lastEnergyUpdateTime = currentTime;
-
-                // 6. 定期验证能源平衡
-                if (enableEnergyValidation && ++validationCounter % VALIDATION_INTERVAL == 0) {
-                    validateEnergyBalance();
+            if (currentTime - lastHostUpdateTime > ENERGY_UPDATE_THRESHOLD) {
+                switch (ledgerMode) {
+                    case EAGER -> settleEager(currentTime);
+                    case LAZY -> settleLazy(currentTime);
+                    case VERIFY -> settleVerify(currentTime);
                 }
+                // 只有主机更新决定区间边界：读取触发的结算累加在当前区间内，这里统一收尾
+                ledger.closeTick();
+                lastHostUpdateTime = currentTime;
             }
         }
 
+        // 采样点事件在仿真空闲时会停止，有新处理时重新调度
+        scheduleNextGenerationEvent();
+
         // 更新主机处理（在同步块外执行）
         for (var host : getHostList()) {
             double delay = host.updateProcessing(currentTime);
@@ -264,13 +502,92 @@ public class DatacenterGreenAware extends DatacenterSimple {
         return minDelay;
     }
 
+    /**
+     * 即时结算：每次更新都采样功率
+     */
+    private void settleEager(double currentTime) {
+        double powerWatts = this.getPowerModel().getPower();
+        settleLedger(currentTime, powerWatts);
+
+        // 记录日志
+        if (LOGGER.isInfoEnabled() && currentTime - lastHostUpdateTime > 1.0) { // 每秒最多记录一次
+            LOGGER.info(String.format(
+                    "%.2f: DC %d - Power: %.1f W | Used: %.2f J (green: %.2f J, brown: %.2f J) | " +
+                            "Storage: %.2f kWh | CPU: %.1f%% | RAM: %.1f%% | Surplus: %.2f J",
+                    currentTime, getId(), powerWatts, ledger.openTotalEnergyUsed,
+                    ledger.openTotalEnergyUsed - ledger.openBrownUsed, ledger.openBrownUsed,
+                    ledger.stock / 3600000, getCurrentCpuUtilization() * 100,
+                    getCurrentRamUtilization() * 100, ledger.openGreenGeneration - ledger.openTotalEnergyUsed
+            ));
+        }
+    }
+
+    /**
+     * 惰性结算：只有功率变化后才重新采样功率，其余更新直接用缓存功率结算（不采样主机）
+     * 与即时结算的约定一致，更新时刻采样到的功率只计入最后一个更新区间，之前的部分按旧功率结算
+     */
+    private void settleLazy(double currentTime) {
+        if (powerDrawDirty) {
+            if (lastHostUpdateTime - ledger.settledTime > ENERGY_UPDATE_THRESHOLD) {
+                settleLedger(lastHostUpdateTime, ledgerPowerDraw);
+            }
+            ledgerPowerDraw = this.getPowerModel().getPower();
+            powerDrawDirty = false;
+        }
+        if (currentTime - ledger.settledTime > ENERGY_UPDATE_THRESHOLD) {
+            settleLedger(currentTime, ledgerPowerDraw);
+        }
+    }
+
+    /**
+     * 校验模式：惰性账本在即时结算的每个时间点用缓存功率结算，影子账本用实时采样功率结算，
+     * 两者逐位比较；不一致说明有未被标记的功率变化
+     */
+    private void settleVerify(double currentTime) {
+        if (eagerShadow == null) {
+            eagerShadow = copyOf(ledger);
+        }
+        double sampledPower = this.getPowerModel().getPower();
+        if (powerDrawDirty) {
+            ledgerPowerDraw = sampledPower;
+            powerDrawDirty = false;
+        }
+        settleLedger(currentTime, ledgerPowerDraw);
+        eagerShadow.settle(currentTime, sampledPower, totalGenerated);
+
+        if (!ledger.sameAs(eagerShadow)) {
+            ledgerMismatches++;
+            if (ledgerMismatches <= 10) {
+                LOGGER.warn(String.format(
+                        "%.2f: DC %d - Lazy ledger mismatch: cached power %.3f W vs sampled %.3f W | " +
+                                "stock %.6f vs %.6f J | brown %.6f vs %.6f J",
+                        currentTime, getId(), ledgerPowerDraw, sampledPower,
+                        ledger.stock, eagerShadow.stock, ledger.totalBrownUsed, eagerShadow.totalBrownUsed
+                ));
+            }
+            // 重新对齐，后续只比较新的区间
+            eagerShadow = copyOf(ledger);
+            ledgerPowerDraw = sampledPower;
+        }
+    }
+
+    private static EnergyAccount copyOf(EnergyAccount source) {
+        EnergyAccount copy = new EnergyAccount(source.stock);
+        copy.totalGreenUsed = source.totalGreenUsed;
+        copy.totalBrownUsed = source.totalBrownUsed;
+        copy.cumulativeSurplus = source.cumulativeSurplus;
+        copy.settledTime = source.settledTime;
+        copy.generatedAtSettle = source.generatedAtSettle;
+        return copy;
+    }
+
     /**
      * 验证能源平衡
      */
     private void validateEnergyBalance() {
         double totalIn = initialGreenEnergy + totalGenerated;
-        double totalOut = totalGreenUsed;
-        double currentStock = greenEnergy;
+        double totalOut = ledger.totalGreenUsed;
+        double currentStock = ledger.stock;
 
         double balance = totalIn - totalOut - currentStock;
 
@@ -285,64 +602,18 @@ public class DatacenterGreenAware extends DatacenterSimple {
      * 获取指定时间的风电功率（使用线性插值）
      */
     private double getWindPowerAtTime(double time) {
-        if (greenGenerationMap.isEmpty()) {
-            return 0;
-        }
-
-        Map.Entry<Double, Double> floorEntry = greenGenerationMap.floorEntry(time);
-        Map.Entry<Double, Double> ceilingEntry = greenGenerationMap.ceilingEntry(time);
-
-        if (floorEntry == null) {
-            return ceilingEntry != null ? ceilingEntry.getValue() : 0;
-        }
-        if (ceilingEntry == null) {
-            return floorEntry.getValue();
-        }
-
-        if (floorEntry.getKey().equals(time)) {
-            return floorEntry.getValue();
-        }
-
-        // 线性插值
-        double t1 = floorEntry.getKey();
-        double t2 = ceilingEntry.getKey();
-        double p1 = floorEntry.getValue();
-        double p2 = ceilingEntry.getValue();
-
-        double ratio = (time - t1) / (t2 - t1);
-        return p1 + ratio * (p2 - p1);
+        return forecastIndex.powerAt(time);
     }
 
     /**
-     * 计算时间段内的发电量（使用梯形法则积分）
+     * 计算时间段内的发电量
+     * 功率在采样点之间线性插值，前缀和索引给出精确积分，与时间段长度无关
      */
     private double calculateWindEnergy(double startTime, double endTime) {
-        if (startTime >= endTime || greenGenerationMap.isEmpty()) {
+        if (startTime >= endTime) {
             return 0;
         }
-
-        double totalEnergy = 0;
-        double timeStep = Math.min(60, endTime - startTime); // 最大60秒步长
-
-        double currentTime = startTime;
-        double previousPower = getWindPowerAtTime(currentTime) * generationScalingFactor;
-
-        while (currentTime < endTime) {
-            double nextTime = Math.min(currentTime + timeStep, endTime);
-            double nextPower = getWindPowerAtTime(nextTime) * generationScalingFactor;
-
-            // 梯形法则：面积 = (上底 + 下底) * 高 / 2
-            double avgPower = (previousPower + nextPower) / 2.0;
-            double timeDelta = nextTime - currentTime;
-            double energy = avgPower * timeDelta;
-
-            totalEnergy += energy;
-
-            currentTime = nextTime;
-            previousPower = nextPower;
-        }
-
-        return totalEnergy;
+        return forecastIndex.energyBetween(startTime, endTime) * generationScalingFactor;
     }
 
     /**
@@ -432,6 +703,15 @@ public class DatacenterGreenAware extends DatacenterSimple {
                 return false;
             }
 
+            // 建立前缀和索引（采样点按 WIND_DATA_INTERVAL 均匀分布）
+            double[] samples = new double[greenGenerationMap.size()];
+            int idx = 0;
+            for (double powerW : greenGenerationMap.values()) {
+                samples[idx++] = powerW;
+            }
+            forecastIndex = new GenerationForecastIndex(samples, WIND_DATA_INTERVAL,
+                    GenerationForecastIndex.Interpolation.LINEAR);
+
             // 输出加载统计
             double avgPowerKW = (totalPower / dataCount) / 1000;
             LOGGER.info(String.format(
@@ -468,6 +748,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double predictGreenAvailability(double startTime, double endTime) {
         synchronized (energyLock) {
+            settleEnergyLedger();
             double currentTime = getSimulation().clock();
 
             // 确保预测时间合理
@@ -475,10 +756,10 @@ public class DatacenterGreenAware extends DatacenterSimple {
                 startTime = currentTime;
             }
             if (endTime <= startTime) {
-                return greenEnergy;
+                return ledger.stock;
             }
 
-            double currentStock = greenEnergy;
+            double currentStock = ledger.stock;
             double futureGeneration = calculateWindEnergy(startTime, endTime);
 
             // 估算未来消耗（基于当前功率）
@@ -489,12 +770,31 @@ public class DatacenterGreenAware extends DatacenterSimple {
         }
     }
 
+    /**
+     * 预测 [now, now + horizon] 内的绿色发电量（焦耳），O(1)
+     */
+    public double getGreenForecast(double horizonSeconds) {
+        return forecastIndex.forecast(getSimulation().clock(), horizonSeconds) * generationScalingFactor;
+    }
+
+    /**
+     * 5分钟 / 1小时 / 6小时的预测发电量（焦耳），供状态构建与调度打分使用
+     */
+    public double[] getGreenForecastFeatures() {
+        double[] features = forecastIndex.forecastFeatures(getSimulation().clock());
+        for (int i = 0; i < features.length; i++) {
+            features[i] *= generationScalingFactor;
+        }
+        return features;
+    }
+
     /**
      * 获取绿色能源库存状态
      */
     public GreenEnergyStatus getGreenEnergyStatus() {
         synchronized (energyLock) {
-            double currentStock = greenEnergy;
+            settleEnergyLedger();
+            double currentStock = ledger.stock;
             double currentPower = getCurrentGreenPower();
             double stockRatio = currentStock / initialGreenEnergy;
 
@@ -624,8 +924,9 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getGreenEnergyRatio() {
         synchronized (energyLock) {
-            double total = totalGreenUsed + totalBrownUsed;
-            return total > 0 ? totalGreenUsed / total : 1.0;
+            settleEnergyLedger();
+            double total = ledger.totalGreenUsed + ledger.totalBrownUsed;
+            return total > 0 ? ledger.totalGreenUsed / total : 1.0;
         }
     }
 
@@ -641,8 +942,8 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getEnergySelfSufficiency() {
         synchronized (energyLock) {
-            if (lastTickTotalEnergyUsed <= 0) return 1.0;
-            return Math.min(1.0, lastTickGreenGeneration / lastTickTotalEnergyUsed);
+            if (ledger.lastTickTotalEnergyUsed <= 0) return 1.0;
+            return Math.min(1.0, ledger.lastTickGreenGeneration / ledger.lastTickTotalEnergyUsed);
         }
     }
 
@@ -651,10 +952,25 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getCurrentGreenEnergyStock() {
         synchronized (energyLock) {
-            return greenEnergy;
+            settleEnergyLedger();
+            return ledger.stock;
         }
     }
 
+    /**
+     * 获取绿色能源库存（焦耳，读取前惰性结算）
+     */
+    public double getGreenEnergy() {
+        return getCurrentGreenEnergyStock();
+    }
+
+    /**
+     * 已处理的采样点事件数（与仿真tick数无关）
+     */
+    public long getGenerationEventCount() {
+        return generationEventCount;
+    }
+
     /**
      * 获取当前绿色能源库存（千瓦时）
      */
@@ -667,7 +983,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getLastTickBrownUsedKWh() {
         synchronized (energyLock) {
-            return lastTickBrownUsed / 3600000.0;
+            return ledger.lastTickBrownUsed / 3600000.0;
         }
     }
 
@@ -676,7 +992,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getSurplusForCurrentTick() {
         synchronized (energyLock) {
-            return lastTickSurplus;
+            return ledger.lastTickSurplus;
         }
     }
 
@@ -685,7 +1001,8 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getCumulativeSurplus() {
         synchronized (energyLock) {
-            return cumulativeSurplus;
+            settleEnergyLedger();
+            return ledger.cumulativeSurplus;
         }
     }
 
@@ -694,16 +1011,38 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getTotalGeneratedKWh() {
         synchronized (energyLock) {
+            settleEnergyLedger();
             return totalGenerated / 3600000.0;
         }
     }
 
+    /**
+     * 获取总绿色能源使用量（焦耳）
+     */
+    public double getTotalGreenUsed() {
+        synchronized (energyLock) {
+            settleEnergyLedger();
+            return ledger.totalGreenUsed;
+        }
+    }
+
+    /**
+     * 获取总棕色能源使用量（焦耳）
+     */
+    public double getTotalBrownUsed() {
+        synchronized (energyLock) {
+            settleEnergyLedger();
+            return ledger.totalBrownUsed;
+        }
+    }
+
     /**
      * 获取总绿色能源使用量（千瓦时）
      */
     public double getTotalGreenUsedKWh() {
         synchronized (energyLock) {
-            return totalGreenUsed / 3600000.0;
+            settleEnergyLedger();
+            return ledger.totalGreenUsed / 3600000.0;
         }
     }
 
@@ -712,7 +1051,8 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getTotalBrownUsedKWh() {
         synchronized (energyLock) {
-            return totalBrownUsed / 3600000.0;
+            settleEnergyLedger();
+            return ledger.totalBrownUsed / 3600000.0;
         }
     }
 
@@ -731,6 +1071,7 @@ public class DatacenterGreenAware extends DatacenterSimple {
      */
     public double getTotalGenerate() {
         synchronized (energyLock) {
+            settleEnergyLedger();
             return totalGenerated;
         }
     }
@@ -743,7 +1084,10 @@ public class DatacenterGreenAware extends DatacenterSimple {
             throw new IllegalArgumentException("Generation scaling factor must be positive");
         }
         synchronized (energyLock) {
+            // 旧缩放因子下的发电量先结算
+            settleEnergyLedger();
             this.generationScalingFactor = factor;
+            publishToFleet();
             LOGGER.info("Generation scaling factor set to {}", factor);
         }
     }
@@ -756,11 +1100,129 @@ public class DatacenterGreenAware extends DatacenterSimple {
         LOGGER.info("Energy validation {}", enable ? "enabled" : "disabled");
     }
 
+    /**
+     * 加入多数据中心共享账本，之后每次结算都会同步到该账本（可加入多个，重复加入忽略）
+     */
+    public void joinFleetLedger(FleetEnergyLedger fleet) {
+        synchronized (energyLock) {
+            for (FleetEnergyLedger joined : fleetLedgers) {
+                if (joined == fleet) return;
+            }
+            int n = fleetLedgers.length;
+            fleetLedgers = Arrays.copyOf(fleetLedgers, n + 1);
+            fleetSlots = Arrays.copyOf(fleetSlots, n + 1);
+            fleetLedgers[n] = fleet;
+            fleetSlots[n] = fleet.register(this, initialGreenEnergy);
+            settleEnergyLedger();
+            publishToFleet();
+        }
+    }
+
+    /**
+     * 在指定共享账本中的槽位（未加入为 -1）
+     */
+    public int getFleetSlot(FleetEnergyLedger fleet) {
+        synchronized (energyLock) {
+            for (int i = 0; i < fleetLedgers.length; i++) {
+                if (fleetLedgers[i] == fleet) return fleetSlots[i];
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * 结算到当前时间并同步到共享账本（供 {@link FleetEnergyLedger#settleAll()} 调用）
+     */
+    void publishToFleetLedger() {
+        synchronized (energyLock) {
+            settleEnergyLedger();
+            publishToFleet();
+        }
+    }
+
+    /**
+     * 把账本和当前未结算分段写入共享账本
+     *
+     * 分段内任一时刻 t 一次结算的结果取决于 f(t) = 库存 + 发电 - 消耗：f >= 0 时绿色用量等于消耗，
+     * 否则等于库存 + 发电。发电功率在采样点之间线性变化，f 是 t 的二次式；
+     * 分段的有效期截止到 f 的下一个根（库存耗尽或恢复）或下一个采样点，过期后由共享账本在读取时重新结算。
+     */
+    private void publishToFleet() {
+        if (fleetLedgers.length == 0) {
+            return;
+        }
+        double currentTime = getSimulation().clock();
+        // 只有 LAZY 模式的读取会按缓存功率结算消耗；功率待重新采样时读取也不会越过上次主机更新
+        double power = ledgerMode == LedgerMode.LAZY && !powerDrawDirty ? ledgerPowerDraw : 0;
+        double genSince = lastGenerationUpdateTime;
+        double genPower = forecastIndex.powerAt(genSince) * generationScalingFactor;
+        double genSlope = forecastIndex.slopeAt(genSince) * generationScalingFactor;
+
+        // f(genSince + y) = a·y² + b·y + c
+        double a = genSlope / 2;
+        double b = genPower - power;
+        double c = ledger.stock - power * (genSince - ledger.settledTime);
+        double y = currentTime - genSince;
+        double f = (a * y + b) * y + c;
+        boolean depleted = f < -STOCK_EPSILON || (f <= STOCK_EPSILON && 2 * a * y + b < 0);
+
+        // 已计入总发电量但尚未随消耗结算的发电量也计入盈余，使盈余与库存对应同一时间
+        double surplus = ledger.cumulativeSurplus + totalGenerated - ledger.generatedAtSettle;
+        Double boundary = greenGenerationMap.higherKey(genSince);
+        double validUntil = boundary != null ? boundary : Double.POSITIVE_INFINITY;
+        if (power > 0) {
+            validUntil = Math.min(validUntil, genSince + nextRoot(a, b, c, y));
+        }
+        validUntil = Math.max(validUntil, currentTime);
+        for (int i = 0; i < fleetLedgers.length; i++) {
+            fleetLedgers[i].publish(fleetSlots[i], ledger.stock, ledger.totalGreenUsed, ledger.totalBrownUsed,
+                    totalGenerated, surplus, power, ledger.settledTime, genPower, genSlope, genSince, depleted,
+                    validUntil);
+        }
+    }
+
+    /**
+     * a·y² + b·y + c 在 y0 之后的最小根（没有则为正无穷）
+     */
+    private static double nextRoot(double a, double b, double c, double y0) {
+        double r1 = Double.POSITIVE_INFINITY;
+        double r2 = Double.POSITIVE_INFINITY;
+        if (Math.abs(a) < 1e-12) {
+            if (b != 0) r1 = -c / b;
+        } else {
+            double disc = b * b - 4 * a * c;
+            if (disc < 0) return Double.POSITIVE_INFINITY;
+            // 数值稳定的求根形式
+            double q = -0.5 * (b + Math.copySign(Math.sqrt(disc), b));
+            r1 = q / a;
+            if (q != 0) r2 = c / q;
+        }
+        double next = Double.POSITIVE_INFINITY;
+        if (r1 > y0 && r1 < next) next = r1;
+        if (r2 > y0 && r2 < next) next = r2;
+        return next;
+    }
+
+    /**
+     * 设置账本结算模式（切换前按旧模式结算）
+     */
+    public void setLedgerMode(LedgerMode mode) {
+        synchronized (energyLock) {
+            settleEnergyLedger();
+            this.ledgerMode = mode;
+            this.eagerShadow = null;
+            this.powerDrawDirty = true;
+            publishToFleet();
+            LOGGER.info("Energy ledger mode set to {}", mode);
+        }
+    }
+
     /**
      * 获取数据中心状态摘要
      */
     public String getStatusSummary() {
         synchronized (energyLock) {
+            settleEnergyLedger();
             return String.format(
                     "DC %d Status:\n" +
                             "  Green Energy: %.2f kWh (%.1f%%)\n" +
@@ -773,11 +1235,11 @@ public class DatacenterGreenAware extends DatacenterSimple {
                             "  RAM Util: %.1f%%\n" +
                             "  Overall Load: %.1f%%",
                     getId(),
-                    greenEnergy / 3600000, (greenEnergy / initialGreenEnergy) * 100,
+                    ledger.stock / 3600000, (ledger.stock / initialGreenEnergy) * 100,
                     getCurrentGreenPower() / 1000,
                     totalGenerated / 3600000,
-                    totalGreenUsed / 3600000,
-                    totalBrownUsed / 3600000,
+                    ledger.totalGreenUsed / 3600000,
+                    ledger.totalBrownUsed / 3600000,
                     getGreenEnergyRatio() * 100,
                     getCurrentCpuUtilization() * 100,
                     getCurrentRamUtilization(),
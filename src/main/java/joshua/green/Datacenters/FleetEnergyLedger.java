@@ -0,0 +1,420 @@
+package joshua.green.Datacenters;
+
+import org.cloudsimplus.core.Simulation;
+
+import java.util.Arrays;
+
+/**
+ * 多数据中心共享能源账本（结构数组）
+ *
+ * 每个数据中心注册后得到一个槽位，结算时把自己的库存、绿/棕能源使用量、发电量和累积盈余
+ * 写入对应槽位，账本按差值维护全系统合计，因此系统级聚合都是 O(1) 读取，
+ * 决策路径上不再需要遍历所有数据中心。
+ *
+ * 槽位同时记录尚未结算的当前分段：恒定功率、线性插值的发电功率，以及库存是否已经耗尽
+ * （库存足够时绿色用量 = 消耗，耗尽时绿色用量 = 库存 + 发电）。读取时按当前仿真时间外推，
+ * 结果与该数据中心此刻结算得到的值一致。分段只在一种状态内有效，有效期截止到库存耗尽/恢复的时刻
+ * 或下一个采样点；读取前按有效期小顶堆重新结算已过期的槽位（每个分段最多一次，O(log DC)），
+ * 其余情况下外推的合计是闭式多项式，读取保持 O(1)。
+ * 非 LAZY 模式下消耗只在主机更新时结算，分段功率按 0 发布。
+ */
+public class FleetEnergyLedger {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // 每个数据中心一个槽位（焦耳）
+    private DatacenterGreenAware[] members = new DatacenterGreenAware[INITIAL_CAPACITY];
+    private double[] initial = new double[INITIAL_CAPACITY];
+    private double[] stock = new double[INITIAL_CAPACITY];
+    private double[] greenUsed = new double[INITIAL_CAPACITY];
+    private double[] brownUsed = new double[INITIAL_CAPACITY];
+    private double[] generated = new double[INITIAL_CAPACITY];
+    private double[] surplus = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // 每个槽位当前未结算的分段
+    private double[] power = new double[INITIAL_CAPACITY];       // 分段功率（瓦特）
+    private double[] usedSince = new double[INITIAL_CAPACITY];   // 消耗已结算到的时间
+    private double[] genPower = new double[INITIAL_CAPACITY];    // genSince 时刻的发电功率（瓦特）
+    private double[] genSlope = new double[INITIAL_CAPACITY];    // 发电功率变化率（瓦特/秒）
+    private double[] genSince = new double[INITIAL_CAPACITY];    // 发电已结算到的时间
+    private boolean[] depleted = new boolean[INITIAL_CAPACITY];  // 分段内库存已耗尽
+    private double[] validUntil = new double[INITIAL_CAPACITY];  // 分段有效期
+
+    // 按有效期排序的槽位小顶堆（heapPos 为槽位在堆中的位置）
+    private int[] heap = new int[INITIAL_CAPACITY];
+    private int[] heapPos = new int[INITIAL_CAPACITY];
+    private Simulation simulation;
+
+    // 全系统合计
+    private double totalInitial = 0;
+    private double totalStock = 0;
+    private double totalGreenUsed = 0;
+    private double totalBrownUsed = 0;
+    private double totalGenerated = 0;
+    private double totalSurplus = 0;
+
+    // 全系统未结算分段的合计（时间相对 origin 保存）
+    private double origin = 0;
+    private final OpenSum consumption = new OpenSum();          // 所有槽位的消耗
+    private final OpenSum greenConsumption = new OpenSum();     // 库存足够的槽位：绿色用量 = 消耗
+    private final OpenSum generation = new OpenSum();           // 所有槽位的发电
+    private final OpenSum depletedGeneration = new OpenSum();   // 库存耗尽的槽位：绿色用量 = 库存 + 发电
+    private double depletedStock = 0;
+
+    /**
+     * Σ a_i·(t - t_i) + b_i·(t - t_i)² 的增量合计；t_i 相对 origin 保存，平方项不随仿真时间放大
+     */
+    private static final class OpenSum {
+        double a, at, b, bt, btt;
+
+        void add(double ai, double bi, double ti, double sign) {
+            a += sign * ai;
+            at += sign * ai * ti;
+            b += sign * bi;
+            bt += sign * bi * ti;
+            btt += sign * bi * ti * ti;
+        }
+
+        /** origin 前移 delta 后重写相对时间 */
+        void shift(double delta) {
+            btt += delta * (delta * b - 2 * bt);
+            bt -= delta * b;
+            at -= delta * a;
+        }
+
+        double valueAt(double t) {
+            return a * t - at + b * t * t - 2 * bt * t + btt;
+        }
+
+        void clear() {
+            a = at = b = bt = btt = 0;
+        }
+    }
+
+    /**
+     * 注册数据中心
+     * @return 槽位编号
+     */
+    synchronized int register(DatacenterGreenAware dc, double initialGreen) {
+        if (size == members.length) {
+            int capacity = size * 2;
+            members = Arrays.copyOf(members, capacity);
+            initial = Arrays.copyOf(initial, capacity);
+            stock = Arrays.copyOf(stock, capacity);
+            greenUsed = Arrays.copyOf(greenUsed, capacity);
+            brownUsed = Arrays.copyOf(brownUsed, capacity);
+            generated = Arrays.copyOf(generated, capacity);
+            surplus = Arrays.copyOf(surplus, capacity);
+            power = Arrays.copyOf(power, capacity);
+            usedSince = Arrays.copyOf(usedSince, capacity);
+            genPower = Arrays.copyOf(genPower, capacity);
+            genSlope = Arrays.copyOf(genSlope, capacity);
+            genSince = Arrays.copyOf(genSince, capacity);
+            depleted = Arrays.copyOf(depleted, capacity);
+            validUntil = Arrays.copyOf(validUntil, capacity);
+            heap = Arrays.copyOf(heap, capacity);
+            heapPos = Arrays.copyOf(heapPos, capacity);
+        }
+        if (simulation == null) {
+            simulation = dc.getSimulation();
+        }
+        int slot = size++;
+        members[slot] = dc;
+        initial[slot] = initialGreen;
+        totalInitial += initialGreen;
+        validUntil[slot] = Double.POSITIVE_INFINITY;
+        heap[slot] = slot;
+        heapPos[slot] = slot;
+        return slot;
+    }
+
+    /**
+     * 数据中心结算后写入最新数值和当前分段，合计按差值更新
+     *
+     * @param cumulativeSurplusJ 截至发电结算时间的累积盈余（已结算发电 - 已结算消耗）
+     * @param powerW             分段功率，从 usedSinceTime 起算
+     * @param genPowerW          genSinceTime 时刻的发电功率，按 genSlopeW 线性变化
+     * @param depletedNow        库存已耗尽：分段内绿色用量只来自库存和发电
+     * @param validUntilTime     分段有效期（库存耗尽/恢复或发电功率斜率改变的时刻）
+     */
+    synchronized void publish(int slot, double stockJ, double greenUsedJ, double brownUsedJ,
+                              double generatedJ, double cumulativeSurplusJ,
+                              double powerW, double usedSinceTime,
+                              double genPowerW, double genSlopeW, double genSinceTime, boolean depletedNow,
+                              double validUntilTime) {
+        double now = now();
+        if (now > origin) {
+            shiftOrigin(now);
+        }
+        addOpen(slot, -1);
+
+        totalStock += stockJ - stock[slot];
+        totalGreenUsed += greenUsedJ - greenUsed[slot];
+        totalBrownUsed += brownUsedJ - brownUsed[slot];
+        totalGenerated += generatedJ - generated[slot];
+        totalSurplus += cumulativeSurplusJ - surplus[slot];
+
+        stock[slot] = stockJ;
+        greenUsed[slot] = greenUsedJ;
+        brownUsed[slot] = brownUsedJ;
+        generated[slot] = generatedJ;
+        surplus[slot] = cumulativeSurplusJ;
+        power[slot] = powerW;
+        usedSince[slot] = usedSinceTime;
+        genPower[slot] = genPowerW;
+        genSlope[slot] = genSlopeW;
+        genSince[slot] = genSinceTime;
+        depleted[slot] = depletedNow;
+
+        addOpen(slot, 1);
+        updateValidUntil(slot, validUntilTime);
+    }
+
+    /**
+     * 重新结算分段已过期的槽位（读取前调用）
+     */
+    private void settleExpired() {
+        while (true) {
+            DatacenterGreenAware dc;
+            synchronized (this) {
+                if (size == 0 || validUntil[heap[0]] >= now()) return;
+                int slot = heap[0];
+                // 先移出堆顶，数据中心重新发布时写入新的有效期
+                updateValidUntil(slot, Double.POSITIVE_INFINITY);
+                dc = members[slot];
+            }
+            // 不持有账本锁调用数据中心，避免与数据中心的能源锁交叉加锁
+            dc.publishToFleetLedger();
+        }
+    }
+
+    private void updateValidUntil(int slot, double time) {
+        double old = validUntil[slot];
+        validUntil[slot] = time;
+        if (time < old) {
+            siftUp(heapPos[slot]);
+        } else if (time > old) {
+            siftDown(heapPos[slot]);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (validUntil[heap[parent]] <= validUntil[heap[i]]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int child = left + 1 < size && validUntil[heap[left + 1]] < validUntil[heap[left]] ? left + 1 : left;
+            if (validUntil[heap[i]] <= validUntil[heap[child]]) break;
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i];
+        heap[i] = heap[j];
+        heap[j] = a;
+        heapPos[heap[i]] = i;
+        heapPos[heap[j]] = j;
+    }
+
+    private void addOpen(int slot, double sign) {
+        consumption.add(power[slot], 0, usedSince[slot] - origin, sign);
+        generation.add(genPower[slot], genSlope[slot] / 2, genSince[slot] - origin, sign);
+        if (depleted[slot]) {
+            depletedStock += sign * stock[slot];
+            depletedGeneration.add(genPower[slot], genSlope[slot] / 2, genSince[slot] - origin, sign);
+        } else {
+            greenConsumption.add(power[slot], 0, usedSince[slot] - origin, sign);
+        }
+    }
+
+    private void shiftOrigin(double newOrigin) {
+        double delta = newOrigin - origin;
+        consumption.shift(delta);
+        greenConsumption.shift(delta);
+        generation.shift(delta);
+        depletedGeneration.shift(delta);
+        origin = newOrigin;
+    }
+
+    private double now() {
+        return simulation != null ? simulation.clock() : 0;
+    }
+
+    /**
+     * 让所有数据中心结算到当前时间，并重新求和以消除差值累积的舍入误差（O(DC)，不要在决策路径上调用）
+     */
+    public void settleAll() {
+        DatacenterGreenAware[] snapshot;
+        synchronized (this) {
+            snapshot = Arrays.copyOf(members, size);
+        }
+        // 不持有账本锁调用数据中心，避免与数据中心的能源锁交叉加锁
+        for (DatacenterGreenAware dc : snapshot) {
+            dc.publishToFleetLedger();
+        }
+        recomputeTotals();
+    }
+
+    private synchronized void recomputeTotals() {
+        totalInitial = 0;
+        totalStock = 0;
+        totalGreenUsed = 0;
+        totalBrownUsed = 0;
+        totalGenerated = 0;
+        totalSurplus = 0;
+        origin = now();
+        consumption.clear();
+        greenConsumption.clear();
+        generation.clear();
+        depletedGeneration.clear();
+        depletedStock = 0;
+        for (int i = 0; i < size; i++) {
+            totalInitial += initial[i];
+            totalStock += stock[i];
+            totalGreenUsed += greenUsed[i];
+            totalBrownUsed += brownUsed[i];
+            totalGenerated += generated[i];
+            totalSurplus += surplus[i];
+            addOpen(i, 1);
+        }
+    }
+
+    // ========== 系统级聚合（O(1)，外推到当前时间） ==========
+
+    private double openConsumption(double t) {
+        return consumption.valueAt(t - origin);
+    }
+
+    private double openGeneration(double t) {
+        return generation.valueAt(t - origin);
+    }
+
+    private double openGreen(double t) {
+        return greenConsumption.valueAt(t - origin) + depletedStock + depletedGeneration.valueAt(t - origin);
+    }
+
+    public synchronized double getSystemInitialGreen() {
+        return totalInitial;
+    }
+
+    public double getSystemGreenStock() {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            return totalStock + openGeneration(t) - openGreen(t);
+        }
+    }
+
+    public double getSystemGreenUsed() {
+        settleExpired();
+        synchronized (this) {
+            return totalGreenUsed + openGreen(now());
+        }
+    }
+
+    public double getSystemBrownUsed() {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            return totalBrownUsed + openConsumption(t) - openGreen(t);
+        }
+    }
+
+    public double getSystemTotalUsed() {
+        settleExpired();
+        synchronized (this) {
+            return totalGreenUsed + totalBrownUsed + openConsumption(now());
+        }
+    }
+
+    public double getSystemGenerated() {
+        settleExpired();
+        synchronized (this) {
+            return totalGenerated + openGeneration(now());
+        }
+    }
+
+    public double getSystemSurplus() {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            return totalSurplus + openGeneration(t) - openConsumption(t);
+        }
+    }
+
+    /**
+     * 全系统绿色能源使用比例（无消耗时为0）
+     */
+    public double getSystemGreenRatio() {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            double green = totalGreenUsed + openGreen(t);
+            double total = totalGreenUsed + totalBrownUsed + openConsumption(t);
+            return total > 0 ? green / total : 0.0;
+        }
+    }
+
+    // ========== 单个数据中心（按槽位，外推到当前时间） ==========
+
+    private double openConsumption(int slot, double t) {
+        return power[slot] * Math.max(0, t - usedSince[slot]);
+    }
+
+    private double openGeneration(int slot, double t) {
+        double d = Math.max(0, t - genSince[slot]);
+        return (genPower[slot] + genSlope[slot] / 2 * d) * d;
+    }
+
+    private double openGreen(int slot, double t) {
+        return depleted[slot] ? stock[slot] + openGeneration(slot, t) : openConsumption(slot, t);
+    }
+
+    public double getGreenUsed(int slot) {
+        settleExpired();
+        synchronized (this) {
+            return greenUsed[slot] + openGreen(slot, now());
+        }
+    }
+
+    public double getBrownUsed(int slot) {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            return brownUsed[slot] + openConsumption(slot, t) - openGreen(slot, t);
+        }
+    }
+
+    /**
+     * 单个数据中心累计总耗能（绿+棕，单调不减）
+     */
+    public double getTotalUsed(int slot) {
+        settleExpired();
+        synchronized (this) {
+            return greenUsed[slot] + brownUsed[slot] + openConsumption(slot, now());
+        }
+    }
+
+    public double getGreenStock(int slot) {
+        settleExpired();
+        synchronized (this) {
+            double t = now();
+            return stock[slot] + openGeneration(slot, t) - openGreen(slot, t);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,142 @@
+package joshua.green;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Quantized-state decision cache for inference runs.
+ *
+ * Consecutive cloudlets often see (almost) the same state because DC energy barely moves
+ * within one tick. With a deterministic/greedy policy the answer cannot differ, so the
+ * action for a quantized state is reused instead of doing another HTTP round-trip.
+ * Do NOT use it with a sampling policy or while training.
+ *
+ * Bounded by LRU capacity; entries expire after a TTL measured in simulation time.
+ */
+public class DecisionCache {
+
+    // Cached decision
+    public static class Entry {
+        public final int action;
+        public final double logProb;
+        public final double value;
+        final double createdAt;
+
+        Entry(int action, double logProb, double value, double createdAt) {
+            this.action = action;
+            this.logProb = logProb;
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+
+    // Quantized state used as map key
+    private static final class Key {
+        private final long[] cells;
+        private final int hash;
+
+        Key(long[] cells) {
+            this.cells = cells;
+            this.hash = Arrays.hashCode(cells);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && hash == k.hash && Arrays.equals(cells, k.cells);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final double quantum;
+    private final double ttl;
+    private final Map<Key, Entry> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long expired = 0;
+
+    /**
+     * @param quantum  bucket width per state feature (states are mostly in [-1, 1])
+     * @param capacity max entries kept (least recently used evicted first)
+     * @param ttl      max age of an entry in simulation seconds
+     */
+    public DecisionCache(double quantum, int capacity, double ttl) {
+        if (quantum <= 0) {
+            throw new IllegalArgumentException("Cache quantum must be positive");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.quantum = quantum;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return cached decision, or null on miss / expired entry
+     */
+    public synchronized Entry get(double[] state, double now) {
+        Key key = quantize(state);
+        Entry e = entries.get(key);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        if (now - e.createdAt > ttl) {
+            entries.remove(key);
+            expired++;
+            misses++;
+            return null;
+        }
+        hits++;
+        return e;
+    }
+
+    public synchronized void put(double[] state, int action, double logProb, double value, double now) {
+        entries.put(quantize(state), new Entry(action, logProb, value, now));
+    }
+
+    private Key quantize(double[] state) {
+        long[] cells = new long[state.length];
+        for (int i = 0; i < state.length; i++) {
+            cells[i] = Math.round(state[i] / quantum);
+        }
+        return new Key(cells);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    public synchronized String getStats() {
+        return String.format("Decision cache: hits=%d, misses=%d (expired=%d), hitRate=%.2f%%, size=%d",
+                hits, misses, expired, getHitRate() * 100, entries.size());
+    }
+}
@@ -1,5 +1,7 @@
 package joshua.green.FedRL;
 
+import joshua.green.GenerationForecastIndex;
+import joshua.green.FedRL.energy.GenerationProfile;
 import joshua.green.FedRL.energy.RenewableEnergyGenerator;
 import joshua.green.FedRL.energy.SolarEnergyLoader;
 import joshua.green.FedRL.energy.WindEnergyLoader;
@@ -13,9 +15,7 @@ import org.cloudsimplus.hosts.Host;
 import org.cloudsimplus.resources.DatacenterStorage;
 import org.cloudsimplus.resources.SanStorage;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -27,8 +27,11 @@ public class DatacenterGreenAware extends DatacenterSimple {
 
     private double cumulativeSurplus;
 
-    // 原有的能源生成映射
-    private final Map<Integer, Double> greenGenerationMap = new HashMap<>();
+    // 原有的按秒能源生成数据（只读，多个数据中心共享）
+    private GenerationProfile greenProfile;
+    // 按秒的前缀和索引，窗口预测 O(1)
+    private GenerationForecastIndex forecastIndex =
+            new GenerationForecastIndex(new double[0], 1.0, GenerationForecastIndex.Interpolation.STEP);
     private String greenProfileCsvPath = "/Users/joshua/Downloads/RenewableAwareDatacenters/src/main/java/joshua/green/Datacenters/green_generation_continuous.csv";
 
     // 可再生能源生成器列表
@@ -189,9 +192,8 @@ public class DatacenterGreenAware extends DatacenterSimple {
         if (useModularEnergySystem) {
             return getTotalGreenPower(time);
         } else {
-            int tick = (int)Math.floor(time);
-            double base = greenGenerationMap.getOrDefault(tick, 0.0);
-            return base * generationScalingFactor;
+            long tick = (long) Math.floor(time);
+            return legacyPowerAt(tick) * generationScalingFactor;
         }
     }
 
@@ -245,8 +247,8 @@ public class DatacenterGreenAware extends DatacenterSimple {
             return totalPredicted;
         } else {
             double nextTime = getSimulation().clock() + 1.0;
-            int nextTick = (int)Math.floor(nextTime);
-            return greenGenerationMap.getOrDefault(nextTick, 0.0) * generationScalingFactor;
+            long nextTick = (long) Math.floor(nextTime);
+            return legacyPowerAt(nextTick) * generationScalingFactor;
         }
     }
 
@@ -259,11 +261,9 @@ public class DatacenterGreenAware extends DatacenterSimple {
                 total += generator.getEnergyForPeriod(currentTime, windowSize) * generationScalingFactor;
             }
         } else {
-            for (int i = 1; i <= windowSize; i++) {
-                int futureTick = (int)Math.floor(currentTime + i);
-                total += greenGenerationMap.getOrDefault(futureTick, 0.0);
-            }
-            total *= generationScalingFactor;
+            // 未来 windowSize 个整秒的采样之和
+            long firstTick = (long) Math.floor(currentTime) + 1;
+            total = forecastIndex.sampleSum(firstTick, firstTick + windowSize) * generationScalingFactor;
         }
 
         return total;
@@ -538,19 +538,46 @@ public class DatacenterGreenAware extends DatacenterSimple {
     }
 
     private void loadGreenEnergyProfile(String filePath) {
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            br.readLine(); // skip header
-            while ((line = br.readLine()) != null) {
-                String[] parts = line.split(",");
-                int tick = Integer.parseInt(parts[0].trim());
-                double power = Double.parseDouble(parts[1].trim());
-                greenGenerationMap.put(tick, power);
+        try {
+            greenProfile = GenerationProfile.load(filePath);
+        } catch (UncheckedIOException e) {
+            throw new RuntimeException("Error loading green energy profile", e.getCause());
+        }
+        forecastIndex = greenProfile.getForecastIndex();
+        LOGGER.info("Loaded green energy profile with " + greenProfile.size() + " entries: " + greenProfile);
+    }
+
+    /**
+     * legacy 模式下某一秒的功率（未加载数据时为0）
+     */
+    private double legacyPowerAt(long tick) {
+        return greenProfile != null ? greenProfile.powerAt(tick) : 0.0;
+    }
+
+    /**
+     * 预测 [now, now + horizon] 内的绿色发电量（焦耳），O(1)；模块化能源系统下按生成器计算
+     */
+    public double getGreenForecast(double horizonSeconds) {
+        double now = getSimulation().clock();
+        if (useModularEnergySystem) {
+            double total = 0;
+            for (RenewableEnergyGenerator generator : energyGenerators) {
+                total += generator.getEnergyForPeriod(now, horizonSeconds);
             }
-            LOGGER.info("Loaded green energy profile with " + greenGenerationMap.size() + " entries");
-        } catch (IOException e) {
-            throw new RuntimeException("Error loading green energy profile", e);
+            return total * generationScalingFactor;
+        }
+        return forecastIndex.forecast(now, horizonSeconds) * generationScalingFactor;
+    }
+
+    /**
+     * 5分钟 / 1小时 / 6小时的预测发电量（焦耳）
+     */
+    public double[] getGreenForecastFeatures() {
+        double[] features = new double[GenerationForecastIndex.STANDARD_HORIZONS.length];
+        for (int i = 0; i < features.length; i++) {
+            features[i] = getGreenForecast(GenerationForecastIndex.STANDARD_HORIZONS[i]);
         }
+        return features;
     }
 
     public String getDebugInfo() {
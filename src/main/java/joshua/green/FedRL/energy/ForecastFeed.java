@@ -0,0 +1,58 @@
+package joshua.green.FedRL.energy;
+
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * 把发电器的采样序列按仿真时间喂给预测器
+ *
+ * 第 k 个样本对应时间 k * sampleInterval，只有时间已经到达的样本才会被观测，
+ * 因此预测不会读取未来数据。每个样本只观测一次，摊还 O(1)；
+ * 时间回退（新 episode）或跳过超出预热窗口的样本时重置预测器。
+ */
+class ForecastFeed {
+
+    // 第一次查询时间很晚时，只回放最近这么多秒的历史
+    private static final double MAX_WARMUP_SECONDS = 7 * 86400.0;
+
+    private final double sampleInterval;
+    private final LongToDoubleFunction sampleAt;
+    private GenerationForecaster forecaster;
+    private long nextSample = 0;   // 下一个待观测样本编号
+
+    ForecastFeed(double sampleInterval, LongToDoubleFunction sampleAt, GenerationForecaster forecaster) {
+        this.sampleInterval = sampleInterval;
+        this.sampleAt = sampleAt;
+        this.forecaster = forecaster;
+    }
+
+    /**
+     * 预测 currentTime + lookahead 时刻的功率（瓦特）
+     */
+    double predict(double currentTime, double lookahead) {
+        long latest = (long) Math.floor(Math.max(0, currentTime) / sampleInterval);
+        if (latest + 1 < nextSample) {
+            forecaster.reset();
+            nextSample = 0;
+        }
+        long warmup = (long) (MAX_WARMUP_SECONDS / sampleInterval);
+        if (latest - nextSample > warmup) {
+            // 跳过的样本打断了序列，预测器的样本计数（Holt-Winters 季节位置）不再对应，从头开始
+            forecaster.reset();
+            nextSample = latest - warmup;
+        }
+        while (nextSample <= latest) {
+            forecaster.observe(sampleAt.applyAsDouble(nextSample));
+            nextSample++;
+        }
+        return forecaster.predict(currentTime + lookahead - latest * sampleInterval);
+    }
+
+    GenerationForecaster getForecaster() {
+        return forecaster;
+    }
+
+    void setForecaster(GenerationForecaster forecaster) {
+        this.forecaster = forecaster;
+        nextSample = 0;
+    }
+}
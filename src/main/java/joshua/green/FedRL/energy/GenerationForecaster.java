@@ -0,0 +1,40 @@
+package joshua.green.FedRL.energy;
+
+/**
+ * 在线发电功率预测器
+ *
+ * 只使用已经观测到的历史样本（按固定采样间隔依次到达），每个样本 O(1) 增量更新，
+ * 预测查询也是 O(1)，可以在每次调度决策时调用。
+ */
+public interface GenerationForecaster {
+
+    /**
+     * 记录下一个观测样本（瓦特）
+     */
+    void observe(double power);
+
+    /**
+     * 预测最近一次观测之后 horizonSeconds 秒的功率（瓦特），没有观测时返回0
+     */
+    double predict(double horizonSeconds);
+
+    /**
+     * 清空状态（例如新 episode 从头开始）
+     */
+    void reset();
+
+    /**
+     * 持续性 + EWMA：短期接近最近观测，长期回归指数滑动平均
+     */
+    static GenerationForecaster persistenceEwma() {
+        return new PersistenceEwmaForecaster(0.05, 3600.0);
+    }
+
+    /**
+     * 带日周期的 Holt-Winters（加性季节项、阻尼趋势）
+     * @param sampleInterval 采样间隔（秒）
+     */
+    static GenerationForecaster holtWintersDaily(double sampleInterval) {
+        return new HoltWintersForecaster(sampleInterval, 86400.0, 0.2, 0.01, 0.1, 0.98);
+    }
+}
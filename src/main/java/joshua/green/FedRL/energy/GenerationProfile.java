@@ -0,0 +1,175 @@
+package joshua.green.FedRL.energy;
+
+import joshua.green.GenerationForecastIndex;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按秒的绿色发电数据（legacy 模式，tick -> 功率W）
+ *
+ * 只读，按文件路径缓存，多个数据中心共享同一份数据。
+ * 零值占多数时（例如夜间没有太阳能）使用非零游程编码，否则使用稠密数组；
+ * 查询越界或缺失的秒返回0，与原来的 getOrDefault(tick, 0.0) 一致。
+ */
+public final class GenerationProfile {
+
+    private static final Map<String, GenerationProfile> CACHE = new ConcurrentHashMap<>();
+    private static final double SPARSE_ZERO_RATIO = 0.5; // 零值比例超过该值时使用游程编码
+
+    private final int length;           // 覆盖的秒数（最大tick + 1）
+    private final int nonZeroCount;
+
+    // 稠密存储（稀疏时为null）
+    private final double[] dense;
+
+    // 稀疏存储：非零游程
+    private final int[] runStart;       // 游程起始tick（升序）
+    private final int[] runOffset;      // 游程在 runValues 中的起点，长度 = 游程数 + 1
+    private final double[] runValues;
+
+    private volatile GenerationForecastIndex forecastIndex;
+
+    private GenerationProfile(double[] samples, int nonZeroCount) {
+        this.length = samples.length;
+        this.nonZeroCount = nonZeroCount;
+
+        if (length > 0 && (length - nonZeroCount) >= SPARSE_ZERO_RATIO * length) {
+            // 统计游程数
+            int runs = 0;
+            for (int t = 0; t < length; t++) {
+                if (samples[t] != 0.0 && (t == 0 || samples[t - 1] == 0.0)) runs++;
+            }
+            runStart = new int[runs];
+            runOffset = new int[runs + 1];
+            runValues = new double[nonZeroCount];
+            int r = -1;
+            int v = 0;
+            for (int t = 0; t < length; t++) {
+                if (samples[t] == 0.0) continue;
+                if (t == 0 || samples[t - 1] == 0.0) {
+                    runStart[++r] = t;
+                    runOffset[r] = v;
+                }
+                runValues[v++] = samples[t];
+            }
+            runOffset[runs] = v;
+            dense = null;
+        } else {
+            dense = samples;
+            runStart = null;
+            runOffset = null;
+            runValues = null;
+        }
+    }
+
+    /**
+     * 加载（或复用已加载的）发电数据，CSV格式：tick,power
+     */
+    public static GenerationProfile load(String filePath) {
+        return CACHE.computeIfAbsent(filePath, path -> {
+            try {
+                return readCsv(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error loading green energy profile " + path, e);
+            }
+        });
+    }
+
+    private static GenerationProfile readCsv(String filePath) throws IOException {
+        int[] ticks = new int[1024];
+        double[] powers = new double[1024];
+        int count = 0;
+        int maxTick = -1;
+
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            br.readLine(); // skip header
+            while ((line = br.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma < 0) continue;
+                int tick = Integer.parseInt(line.substring(0, comma).trim());
+                int end = line.indexOf(',', comma + 1);
+                double power = Double.parseDouble((end < 0 ? line.substring(comma + 1) : line.substring(comma + 1, end)).trim());
+                if (tick < 0) continue;
+
+                if (count == ticks.length) {
+                    ticks = Arrays.copyOf(ticks, count * 2);
+                    powers = Arrays.copyOf(powers, count * 2);
+                }
+                ticks[count] = tick;
+                powers[count] = power;
+                count++;
+                maxTick = Math.max(maxTick, tick);
+            }
+        }
+
+        // 后出现的同一tick覆盖之前的值（与 HashMap.put 一致）
+        double[] samples = new double[maxTick + 1];
+        for (int i = 0; i < count; i++) {
+            samples[ticks[i]] = powers[i];
+        }
+        int nonZero = 0;
+        for (double p : samples) {
+            if (p != 0.0) nonZero++;
+        }
+        return new GenerationProfile(samples, nonZero);
+    }
+
+    /**
+     * 指定秒的功率（瓦特），越界返回0
+     */
+    public double powerAt(long tick) {
+        if (tick < 0 || tick >= length) return 0.0;
+        if (dense != null) return dense[(int) tick];
+
+        int r = Arrays.binarySearch(runStart, (int) tick);
+        if (r < 0) r = -r - 2; // tick 之前最近的游程
+        if (r < 0) return 0.0;
+        int offset = (int) tick - runStart[r];
+        return offset < runOffset[r + 1] - runOffset[r] ? runValues[runOffset[r] + offset] : 0.0;
+    }
+
+    /**
+     * 前缀和预测索引（首次使用时建立，同样在数据中心间共享）
+     * 稠密时直接复用数组；稀疏时复用游程数组，只为非零值建立前缀和，区间发电量按游程二分查找
+     */
+    public GenerationForecastIndex getForecastIndex() {
+        GenerationForecastIndex index = forecastIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = forecastIndex;
+                if (index == null) {
+                    index = dense != null
+                            ? new GenerationForecastIndex(dense, 1.0, GenerationForecastIndex.Interpolation.STEP)
+                            : GenerationForecastIndex.ofStepRuns(runStart, runOffset, runValues, length, 1.0);
+                    forecastIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    public int size() {
+        return length;
+    }
+
+    public int getNonZeroCount() {
+        return nonZeroCount;
+    }
+
+    public boolean isSparse() {
+        return dense == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("GenerationProfile[%d s, %d non-zero, %s]", length, nonZeroCount,
+                isSparse() ? runStart.length + " runs" : "dense");
+    }
+}
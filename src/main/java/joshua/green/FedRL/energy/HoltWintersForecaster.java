@@ -0,0 +1,68 @@
+package joshua.green.FedRL.energy;
+
+/**
+ * Holt-Winters 预测（加性季节项、阻尼趋势）
+ *
+ * 每个样本更新水平、趋势和当前季节位置，O(1)；季节长度 = 周期 / 采样间隔。
+ * 第一个完整周期之前季节项仍在学习，预测主要由水平项决定。
+ */
+public class HoltWintersForecaster implements GenerationForecaster {
+
+    private final double sampleInterval;
+    private final double alpha;   // 水平平滑
+    private final double beta;    // 趋势平滑
+    private final double gamma;   // 季节平滑
+    private final double phi;     // 趋势阻尼
+    private final double[] seasonal;
+
+    private double level = 0;
+    private double trend = 0;
+    private long samples = 0;
+
+    public HoltWintersForecaster(double sampleInterval, double period,
+                                 double alpha, double beta, double gamma, double phi) {
+        if (sampleInterval <= 0 || period < sampleInterval) {
+            throw new IllegalArgumentException("Invalid sample interval / season period");
+        }
+        this.sampleInterval = sampleInterval;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.phi = phi;
+        this.seasonal = new double[(int) Math.round(period / sampleInterval)];
+    }
+
+    @Override
+    public void observe(double power) {
+        int pos = (int) (samples % seasonal.length);
+        if (samples == 0) {
+            level = power;
+            trend = 0;
+        } else {
+            double previousLevel = level;
+            double season = seasonal[pos];
+            level = alpha * (power - season) + (1 - alpha) * (previousLevel + phi * trend);
+            trend = beta * (level - previousLevel) + (1 - beta) * phi * trend;
+            seasonal[pos] = gamma * (power - level) + (1 - gamma) * season;
+        }
+        samples++;
+    }
+
+    @Override
+    public double predict(double horizonSeconds) {
+        if (samples == 0) return 0.0;
+        long steps = Math.max(1, Math.round(Math.max(0, horizonSeconds) / sampleInterval));
+        // 阻尼趋势累加：phi + phi^2 + ... + phi^steps
+        double damped = phi == 1.0 ? steps : phi * (1 - Math.pow(phi, steps)) / (1 - phi);
+        int pos = (int) ((samples - 1 + steps) % seasonal.length);
+        return Math.max(0, level + damped * trend + seasonal[pos]);
+    }
+
+    @Override
+    public void reset() {
+        level = 0;
+        trend = 0;
+        samples = 0;
+        java.util.Arrays.fill(seasonal, 0);
+    }
+}
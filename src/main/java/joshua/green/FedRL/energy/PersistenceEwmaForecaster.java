@@ -0,0 +1,46 @@
+package joshua.green.FedRL.energy;
+
+/**
+ * 持续性 + EWMA 预测
+ *
+ * predict(h) = w(h) * 最近观测 + (1 - w(h)) * EWMA，其中 w(h) = exp(-h / tau)，
+ * 预测越远越依赖长期均值。
+ */
+public class PersistenceEwmaForecaster implements GenerationForecaster {
+
+    private final double alpha;       // EWMA 平滑系数
+    private final double tau;         // 持续性衰减时间常数（秒）
+
+    private double last = 0;
+    private double ewma = 0;
+    private long samples = 0;
+
+    public PersistenceEwmaForecaster(double alpha, double tau) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]");
+        }
+        this.alpha = alpha;
+        this.tau = tau;
+    }
+
+    @Override
+    public void observe(double power) {
+        last = power;
+        ewma = samples == 0 ? power : alpha * power + (1 - alpha) * ewma;
+        samples++;
+    }
+
+    @Override
+    public double predict(double horizonSeconds) {
+        if (samples == 0) return 0.0;
+        double w = tau > 0 ? Math.exp(-Math.max(0, horizonSeconds) / tau) : 0.0;
+        return Math.max(0, w * last + (1 - w) * ewma);
+    }
+
+    @Override
+    public void reset() {
+        last = 0;
+        ewma = 0;
+        samples = 0;
+    }
+}
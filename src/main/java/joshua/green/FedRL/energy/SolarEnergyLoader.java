@@ -3,40 +3,34 @@ package joshua.green.FedRL.energy;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
 import java.util.*;
 
 /**
  * 太阳能发电数据加载器
  * 支持从实际发电厂数据加载
+ *
+ * 真实数据按列存储：时间轴为升序的 epoch 秒 long[]，每个逆变器一列 float[] 交流/直流功率
+ * （该时刻没有上报时为 NaN），逆变器ID映射为 int 下标，另有聚合后的交流功率 double[]。
  */
 public class SolarEnergyLoader implements RenewableEnergyGenerator {
 
     private double peakPower; // 峰值功率（瓦特）
-    private Map<String, List<SolarDataPoint>> inverterData = new HashMap<>(); // 按逆变器分组
-    private List<SolarDataPoint> aggregatedData = new ArrayList<>(); // 聚合后的数据
     private boolean useRealData = false;
 
-    // 太阳能数据点
-    private static class SolarDataPoint {
-        LocalDateTime timestamp;
-        String sourceKey;       // 逆变器ID
-        double dcPower;         // 直流功率 W
-        double acPower;         // 交流功率 W
-        double dailyYield;      // 日发电量
-        double totalYield;      // 总发电量
-
-        SolarDataPoint(LocalDateTime timestamp, String sourceKey,
-                       double dcPower, double acPower,
-                       double dailyYield, double totalYield) {
-            this.timestamp = timestamp;
-            this.sourceKey = sourceKey;
-            this.dcPower = dcPower;
-            this.acPower = acPower;
-            this.dailyYield = dailyYield;
-            this.totalYield = totalYield;
-        }
-    }
+    // 列式存储
+    private long[] timestamps = new long[0];          // 不重复的时间点（epoch秒，升序）
+    private String[] inverterKeys = new String[0];    // 逆变器下标 -> SOURCE_KEY
+    private float[][] inverterAcPower = new float[0][]; // [逆变器][时间下标] 交流功率 W
+    private float[][] inverterDcPower = new float[0][]; // [逆变器][时间下标] 直流功率 W
+    private double[] aggregatedAcPower = new double[0]; // [时间下标] 所有逆变器交流功率之和 W
+
+    private static final long PARSE_ERROR = Long.MIN_VALUE;
+    private static final double SAMPLE_INTERVAL = 900.0; // 15分钟采样间隔
+
+    // 太阳能有明显的日周期，默认用 Holt-Winters，只观测已经发生的样本
+    private final ForecastFeed forecastFeed = new ForecastFeed(SAMPLE_INTERVAL, this::observedSample,
+            GenerationForecaster.holtWintersDaily(SAMPLE_INTERVAL));
 
     /**
      * 使用模型创建太阳能发电器
@@ -62,39 +56,40 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
         try (BufferedReader br = new BufferedReader(new FileReader(csvPath))) {
             String line = br.readLine(); // 跳过表头
 
-            // 支持两种日期格式
-            DateTimeFormatter formatter1 = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm");
-            DateTimeFormatter formatter2 = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-            Map<LocalDateTime, Double> timeAggregation = new TreeMap<>();
+            // 第一遍：按行读入原始列
+            int capacity = 4096;
+            long[] rowTime = new long[capacity];
+            int[] rowInverter = new int[capacity];
+            float[] rowDc = new float[capacity];
+            float[] rowAc = new float[capacity];
+            int rows = 0;
+            Map<String, Integer> inverterIndex = new HashMap<>(); // SOURCE_KEY 驻留为 int
 
             while ((line = br.readLine()) != null) {
                 String[] parts = line.split(",");
                 if (parts.length >= 7) {
                     try {
-                        // 尝试解析日期
-                        LocalDateTime timestamp;
-                        try {
-                            timestamp = LocalDateTime.parse(parts[0].trim(), formatter1);
-                        } catch (Exception e1) {
-                            timestamp = LocalDateTime.parse(parts[0].trim(), formatter2);
+                        long timestamp = parseTimestamp(parts[0]);
+                        if (timestamp == PARSE_ERROR) {
+                            throw new IllegalArgumentException("unparseable date " + parts[0]);
                         }
 
                         String sourceKey = parts[2].trim();
-                        double dcPower = Double.parseDouble(parts[3].trim());
-                        double acPower = Double.parseDouble(parts[4].trim());
-                        double dailyYield = Double.parseDouble(parts[5].trim());
-                        double totalYield = Double.parseDouble(parts[6].trim());
-
-                        SolarDataPoint point = new SolarDataPoint(
-                                timestamp, sourceKey, dcPower, acPower, dailyYield, totalYield
-                        );
-
-                        // 按逆变器存储
-                        inverterData.computeIfAbsent(sourceKey, k -> new ArrayList<>()).add(point);
-
-                        // 聚合同一时间的所有逆变器功率
-                        timeAggregation.merge(timestamp, acPower, Double::sum);
+                        float dcPower = (float) Double.parseDouble(parts[3].trim());
+                        float acPower = (float) Double.parseDouble(parts[4].trim());
+
+                        if (rows == capacity) {
+                            capacity *= 2;
+                            rowTime = Arrays.copyOf(rowTime, capacity);
+                            rowInverter = Arrays.copyOf(rowInverter, capacity);
+                            rowDc = Arrays.copyOf(rowDc, capacity);
+                            rowAc = Arrays.copyOf(rowAc, capacity);
+                        }
+                        rowTime[rows] = timestamp;
+                        rowInverter[rows] = inverterIndex.computeIfAbsent(sourceKey, k -> inverterIndex.size());
+                        rowDc[rows] = dcPower;
+                        rowAc[rows] = acPower;
+                        rows++;
 
                     } catch (Exception e) {
                         System.err.println("Error parsing line: " + line + " - " + e.getMessage());
@@ -102,31 +97,47 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
                 }
             }
 
-            // 创建聚合数据
-            for (Map.Entry<LocalDateTime, Double> entry : timeAggregation.entrySet()) {
-                aggregatedData.add(new SolarDataPoint(
-                        entry.getKey(), "AGGREGATED", 0, entry.getValue(), 0, 0
-                ));
+            // 时间轴：不重复的时间点升序
+            long[] sortedTimes = Arrays.copyOf(rowTime, rows);
+            Arrays.sort(sortedTimes);
+            int distinct = 0;
+            for (int i = 0; i < rows; i++) {
+                if (i == 0 || sortedTimes[i] != sortedTimes[distinct - 1]) {
+                    sortedTimes[distinct++] = sortedTimes[i];
+                }
+            }
+            timestamps = Arrays.copyOf(sortedTimes, distinct);
+
+            // 第二遍：按逆变器分列，并聚合同一时间的所有逆变器功率
+            int inverters = inverterIndex.size();
+            inverterKeys = new String[inverters];
+            inverterIndex.forEach((key, idx) -> inverterKeys[idx] = key);
+            inverterAcPower = new float[inverters][distinct];
+            inverterDcPower = new float[inverters][distinct];
+            for (int inv = 0; inv < inverters; inv++) {
+                Arrays.fill(inverterAcPower[inv], Float.NaN);
+                Arrays.fill(inverterDcPower[inv], Float.NaN);
+            }
+            aggregatedAcPower = new double[distinct];
+            for (int i = 0; i < rows; i++) {
+                int t = Arrays.binarySearch(timestamps, rowTime[i]);
+                inverterAcPower[rowInverter[i]][t] = rowAc[i];
+                inverterDcPower[rowInverter[i]][t] = rowDc[i];
+                aggregatedAcPower[t] += rowAc[i];
             }
 
-            // 按时间排序
-            aggregatedData.sort(Comparator.comparing(s -> s.timestamp));
-
-            if (!aggregatedData.isEmpty()) {
+            if (distinct > 0) {
                 useRealData = true;
 
                 // 计算实际峰值功率
-                peakPower = aggregatedData.stream()
-                        .mapToDouble(s -> s.acPower)
-                        .max()
-                        .orElse(peakPower);
+                peakPower = Arrays.stream(aggregatedAcPower).max().orElse(peakPower);
 
                 System.out.println("Loaded solar plant data:");
-                System.out.println("  Records: " + aggregatedData.size());
-                System.out.println("  Inverters: " + inverterData.size());
+                System.out.println("  Records: " + distinct);
+                System.out.println("  Inverters: " + inverters);
                 System.out.println("  Peak Power: " + (peakPower/1000) + " kW");
-                System.out.println("  Date Range: " + aggregatedData.get(0).timestamp +
-                        " to " + aggregatedData.get(aggregatedData.size()-1).timestamp);
+                System.out.println("  Date Range: " + toDateTime(timestamps[0]) +
+                        " to " + toDateTime(timestamps[distinct - 1]));
             }
 
         } catch (Exception e) {
@@ -136,24 +147,75 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
         }
     }
 
+    /**
+     * 单遍解析时间戳为 epoch 秒（UTC），支持 "dd-MM-yyyy HH:mm" 与 "yyyy-MM-dd HH:mm:ss"
+     * @return epoch 秒，无法解析时返回 PARSE_ERROR
+     */
+    static long parseTimestamp(String text) {
+        String s = text.trim();
+        int year, month, day, hour, minute, second = 0;
+        if (s.length() == 16 && s.charAt(2) == '-' && s.charAt(5) == '-') {
+            day = digits(s, 0, 2);
+            month = digits(s, 3, 5);
+            year = digits(s, 6, 10);
+            hour = digits(s, 11, 13);
+            minute = digits(s, 14, 16);
+        } else if (s.length() == 19 && s.charAt(4) == '-' && s.charAt(7) == '-') {
+            year = digits(s, 0, 4);
+            month = digits(s, 5, 7);
+            day = digits(s, 8, 10);
+            hour = digits(s, 11, 13);
+            minute = digits(s, 14, 16);
+            second = digits(s, 17, 19);
+        } else {
+            return PARSE_ERROR;
+        }
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return PARSE_ERROR;
+        }
+        return daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+    }
+
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    /**
+     * 公历日期 -> 1970-01-01 起的天数
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    private static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
     @Override
     public double getPowerAtTime(double simulationTime) {
-        if (useRealData && !aggregatedData.isEmpty()) {
+        if (useRealData && aggregatedAcPower.length > 0) {
             // 计算数据索引（15分钟间隔）
-            int dataIndex = (int)(simulationTime / 900) % aggregatedData.size();
-
-            if (dataIndex < aggregatedData.size()) {
-                SolarDataPoint current = aggregatedData.get(dataIndex);
-                double power = current.acPower;
+            int dataIndex = dataIndexAt(simulationTime);
+            double power = aggregatedAcPower[dataIndex];
 
-                if (dataIndex + 1 < aggregatedData.size()) {
-                    SolarDataPoint next = aggregatedData.get(dataIndex + 1);
-                    double fraction = (simulationTime % 900) / 900.0;
-                    power = power * (1 - fraction) + next.acPower * fraction;
-                }
-
-                return power;
+            if (dataIndex + 1 < aggregatedAcPower.length) {
+                double fraction = (simulationTime % 900) / 900.0;
+                power = power * (1 - fraction) + aggregatedAcPower[dataIndex + 1] * fraction;
             }
+
+            return power;
         }
 
         return calculateSolarPowerModel(simulationTime);
@@ -203,7 +265,26 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
 
     @Override
     public double getPredictedPower(double currentTime, double lookahead) {
-        return getPowerAtTime(currentTime + lookahead);
+        // 只基于 currentTime 之前的观测预测
+        return forecastFeed.predict(currentTime, lookahead);
+    }
+
+    /**
+     * 第 k 个15分钟采样点的观测功率（瓦特）
+     */
+    private double observedSample(long k) {
+        if (useRealData && aggregatedAcPower.length > 0) {
+            return aggregatedAcPower[(int) (k % aggregatedAcPower.length)];
+        }
+        return calculateSolarPowerModel(k * SAMPLE_INTERVAL);
+    }
+
+    public GenerationForecaster getForecaster() {
+        return forecastFeed.getForecaster();
+    }
+
+    public void setForecaster(GenerationForecaster forecaster) {
+        forecastFeed.setForecaster(forecaster);
     }
 
     @Override
@@ -213,11 +294,8 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
 
     @Override
     public double getCapacityFactor() {
-        if (useRealData && !aggregatedData.isEmpty()) {
-            double avgPower = aggregatedData.stream()
-                    .mapToDouble(s -> s.acPower)
-                    .average()
-                    .orElse(0);
+        if (useRealData && aggregatedAcPower.length > 0) {
+            double avgPower = Arrays.stream(aggregatedAcPower).average().orElse(0);
             return avgPower / peakPower;
         }
         return 0.2;
@@ -229,17 +307,50 @@ public class SolarEnergyLoader implements RenewableEnergyGenerator {
     public Map<String, Double> getInverterPowerAtTime(double simulationTime) {
         Map<String, Double> inverterPowers = new HashMap<>();
 
-        if (useRealData) {
-            int dataIndex = (int)(simulationTime / 900) % aggregatedData.get(0).timestamp.toLocalTime().toSecondOfDay();
+        if (useRealData && timestamps.length > 0) {
+            int dataIndex = dataIndexAt(simulationTime);
 
-            for (Map.Entry<String, List<SolarDataPoint>> entry : inverterData.entrySet()) {
-                List<SolarDataPoint> points = entry.getValue();
-                if (dataIndex < points.size()) {
-                    inverterPowers.put(entry.getKey(), points.get(dataIndex).acPower);
+            for (int inv = 0; inv < inverterKeys.length; inv++) {
+                float power = inverterAcPower[inv][dataIndex];
+                if (!Float.isNaN(power)) {
+                    inverterPowers.put(inverterKeys[inv], (double) power);
                 }
             }
         }
 
         return inverterPowers;
     }
+
+    /**
+     * 单个逆变器在指定时间的交流功率（瓦特），O(1)；该时刻未上报时返回0
+     */
+    public double getInverterAcPower(int inverter, double simulationTime) {
+        if (!useRealData || timestamps.length == 0) return 0.0;
+        float power = inverterAcPower[inverter][dataIndexAt(simulationTime)];
+        return Float.isNaN(power) ? 0.0 : power;
+    }
+
+    /**
+     * 单个逆变器在指定时间的直流功率（瓦特），O(1)；该时刻未上报时返回0
+     */
+    public double getInverterDcPower(int inverter, double simulationTime) {
+        if (!useRealData || timestamps.length == 0) return 0.0;
+        float power = inverterDcPower[inverter][dataIndexAt(simulationTime)];
+        return Float.isNaN(power) ? 0.0 : power;
+    }
+
+    public int getInverterCount() {
+        return inverterKeys.length;
+    }
+
+    public String getInverterKey(int inverter) {
+        return inverterKeys[inverter];
+    }
+
+    /**
+     * 仿真时间 -> 时间轴下标（15分钟间隔，超出数据范围后循环）
+     */
+    private int dataIndexAt(double simulationTime) {
+        return (int) Math.floorMod((long) (simulationTime / 900), (long) timestamps.length);
+    }
 }
\ No newline at end of file
@@ -18,6 +18,12 @@ public class WindEnergyLoader implements RenewableEnergyGenerator {
     private double ratedSpeed = 12.0;   // 额定风速 m/s
     private double cutOutSpeed = 25.0;  // 切出风速 m/s
 
+    private static final double SAMPLE_INTERVAL = 600.0; // 10分钟采样间隔
+
+    // 风电没有稳定的日周期，默认用持续性 + EWMA，只观测已经发生的样本
+    private final ForecastFeed forecastFeed =
+            new ForecastFeed(SAMPLE_INTERVAL, this::observedSample, GenerationForecaster.persistenceEwma());
+
     // 风电数据点
     private static class WindDataPoint {
         LocalDateTime timestamp;
@@ -169,10 +175,26 @@ public class WindEnergyLoader implements RenewableEnergyGenerator {
 
     @Override
     public double getPredictedPower(double currentTime, double lookahead) {
-        // 风电预测更不确定，添加不确定性
-        double basePower = getPowerAtTime(currentTime + lookahead);
-        double uncertainty = 0.2 * basePower * (Math.random() - 0.5);
-        return Math.max(0, basePower + uncertainty);
+        // 只基于 currentTime 之前的观测预测
+        return forecastFeed.predict(currentTime, lookahead);
+    }
+
+    /**
+     * 第 k 个10分钟采样点的观测功率（瓦特）
+     */
+    private double observedSample(long k) {
+        if (!windData.isEmpty()) {
+            return windData.get((int) (k % windData.size())).powerOutput;
+        }
+        return calculateWindPowerModel(k * SAMPLE_INTERVAL);
+    }
+
+    public GenerationForecaster getForecaster() {
+        return forecastFeed.getForecaster();
+    }
+
+    public void setForecaster(GenerationForecaster forecaster) {
+        forecastFeed.setForecaster(forecaster);
     }
 
     @Override
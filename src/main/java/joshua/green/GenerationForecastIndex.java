@@ -0,0 +1,233 @@
+package joshua.green;
+
+import java.util.Arrays;
+
+/**
+ * Prefix-sum index over a uniformly sampled generation profile.
+ *
+ * Built once when the profile is loaded. Cumulative energy at every sample boundary is
+ * precomputed, so "green energy expected in [now, now + h]" is two O(1) lookups for any
+ * horizon, instead of re-integrating or looping over the profile per decision.
+ *
+ * Note the answers come from the simulation input itself, i.e. a perfect forecast.
+ */
+public class GenerationForecastIndex {
+
+    // Standard look-ahead horizons (seconds)
+    public static final double HORIZON_5_MIN = 300.0;
+    public static final double HORIZON_1_HOUR = 3600.0;
+    public static final double HORIZON_6_HOURS = 21600.0;
+    public static final double[] STANDARD_HORIZONS = {HORIZON_5_MIN, HORIZON_1_HOUR, HORIZON_6_HOURS};
+
+    /**
+     * How power behaves between samples
+     */
+    public enum Interpolation {
+        // Linear between samples, first/last value held outside the profile (wind CSV profile)
+        LINEAR,
+        // Sample i holds for [i*interval, (i+1)*interval), zero outside the profile (per-second legacy profile)
+        STEP
+    }
+
+    private final double[] power;        // W per sample (null for run-encoded STEP indexes)
+    private final int n;                 // number of samples
+    private final double interval;       // seconds between samples
+    private final Interpolation interpolation;
+    private final double[] cumulative;   // cumulative[i] = energy (J) in [0, i*interval] (null when run-encoded)
+
+    // Run-encoded STEP profile: only non-zero runs are stored
+    private final int[] runStart;        // first sample of each run (ascending)
+    private final int[] runOffset;       // start of each run in runPrefix, length = runs + 1
+    private final double[] runPrefix;    // runPrefix[v] = energy (J) of the first v non-zero samples
+
+    public GenerationForecastIndex(double[] power, double interval, Interpolation interpolation) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        this.power = power;
+        this.n = power.length;
+        this.interval = interval;
+        this.interpolation = interpolation;
+
+        if (interpolation == Interpolation.LINEAR) {
+            cumulative = new double[Math.max(n, 1)];
+            for (int i = 1; i < n; i++) {
+                cumulative[i] = cumulative[i - 1] + (power[i - 1] + power[i]) / 2.0 * interval;
+            }
+        } else {
+            cumulative = new double[n + 1];
+            for (int i = 0; i < n; i++) {
+                cumulative[i + 1] = cumulative[i] + power[i] * interval;
+            }
+        }
+        this.runStart = null;
+        this.runOffset = null;
+        this.runPrefix = null;
+    }
+
+    private GenerationForecastIndex(int[] runStart, int[] runOffset, double[] runValues, int length, double interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Sample interval must be positive");
+        }
+        this.power = null;
+        this.n = length;
+        this.interval = interval;
+        this.interpolation = Interpolation.STEP;
+        this.cumulative = null;
+        this.runStart = runStart;
+        this.runOffset = runOffset;
+        this.runPrefix = new double[runValues.length + 1];
+        for (int v = 0; v < runValues.length; v++) {
+            runPrefix[v + 1] = runPrefix[v] + runValues[v] * interval;
+        }
+    }
+
+    /**
+     * STEP index over a run-encoded profile that is mostly zero. Memory is proportional to the
+     * non-zero samples; lookups binary-search the runs, O(log runs).
+     *
+     * @param runStart  first sample of each non-zero run, ascending; kept, not copied
+     * @param runOffset start of each run in runValues, length = runs + 1; kept, not copied
+     * @param runValues non-zero sample values (W), run after run
+     * @param length    number of samples covered, zeros included
+     */
+    public static GenerationForecastIndex ofStepRuns(int[] runStart, int[] runOffset, double[] runValues,
+                                                     int length, double interval) {
+        return new GenerationForecastIndex(runStart, runOffset, runValues, length, interval);
+    }
+
+    private double stepPower(int i) {
+        if (power != null) return power[i];
+        int r = Arrays.binarySearch(runStart, i);
+        if (r < 0) r = -r - 2; // last run starting before i
+        if (r < 0) return 0.0;
+        int v = runOffset[r] + (i - runStart[r]);
+        return v < runOffset[r + 1] ? (runPrefix[v + 1] - runPrefix[v]) / interval : 0.0;
+    }
+
+    /**
+     * Energy (J) in [0, i*interval] for a sample boundary 0 <= i <= n (STEP only)
+     */
+    private double stepCumulative(int i) {
+        if (cumulative != null) return cumulative[i];
+        if (i == 0) return 0.0;
+        int r = Arrays.binarySearch(runStart, i - 1);
+        if (r < 0) r = -r - 2; // last run starting before sample i
+        if (r < 0) return 0.0;
+        return runPrefix[Math.min(runOffset[r] + (i - runStart[r]), runOffset[r + 1])];
+    }
+
+    /**
+     * Instantaneous power (W) at time t
+     */
+    public double powerAt(double t) {
+        if (n == 0) return 0.0;
+
+        if (interpolation == Interpolation.STEP) {
+            if (t < 0) return 0.0;
+            long i = (long) Math.floor(t / interval);
+            return i < n ? stepPower((int) i) : 0.0;
+        }
+
+        if (t <= 0) return power[0];
+        double last = (n - 1) * interval;
+        if (t >= last) return power[n - 1];
+        int i = (int) (t / interval);
+        double f = (t - i * interval) / interval;
+        return power[i] + (power[i + 1] - power[i]) * f;
+    }
+
+    /**
+     * Rate of change of power (W/s) on the segment starting at time t (0 for STEP profiles and outside the profile)
+     */
+    public double slopeAt(double t) {
+        if (interpolation == Interpolation.STEP || n < 2 || t < 0) return 0.0;
+        double last = (n - 1) * interval;
+        if (t >= last) return 0.0;
+        int i = (int) (t / interval);
+        return (power[i + 1] - power[i]) / interval;
+    }
+
+    /**
+     * Energy (J) generated in [0, t]; negative t counts backwards (LINEAR only)
+     */
+    private double energyUntil(double t) {
+        if (n == 0) return 0.0;
+
+        if (interpolation == Interpolation.STEP) {
+            if (t <= 0) return 0.0;
+            long i = (long) Math.floor(t / interval);
+            if (i >= n) return stepCumulative(n);
+            return stepCumulative((int) i) + stepPower((int) i) * (t - i * interval);
+        }
+
+        if (t <= 0) return power[0] * t;
+        double last = (n - 1) * interval;
+        if (t >= last) return cumulative[n - 1] + power[n - 1] * (t - last);
+        int i = (int) (t / interval);
+        double offset = t - i * interval;
+        double pt = power[i] + (power[i + 1] - power[i]) * offset / interval;
+        // Trapezoid over the partial segment is exact for linear power
+        return cumulative[i] + (power[i] + pt) / 2.0 * offset;
+    }
+
+    /**
+     * Energy (J) generated in [start, end], O(1) (O(log runs) for run-encoded profiles)
+     */
+    public double energyBetween(double start, double end) {
+        if (end <= start) return 0.0;
+        return energyUntil(end) - energyUntil(start);
+    }
+
+    /**
+     * Green energy (J) expected in [now, now + horizon]
+     */
+    public double forecast(double now, double horizon) {
+        return energyBetween(now, now + horizon);
+    }
+
+    /**
+     * Expected energy (J) for the 5 min / 1 h / 6 h horizons
+     */
+    public double[] forecastFeatures(double now) {
+        double[] features = new double[STANDARD_HORIZONS.length];
+        double base = energyUntil(now);
+        for (int h = 0; h < STANDARD_HORIZONS.length; h++) {
+            features[h] = energyUntil(now + STANDARD_HORIZONS[h]) - base;
+        }
+        return features;
+    }
+
+    /**
+     * Sum of raw sample values with index in [from, to), bounds-safe (STEP profiles)
+     */
+    public double sampleSum(long from, long to) {
+        long a = Math.max(0, Math.min(from, n));
+        long b = Math.max(0, Math.min(to, n));
+        if (b <= a) return 0.0;
+        if (interpolation == Interpolation.STEP) {
+            return (stepCumulative((int) b) - stepCumulative((int) a)) / interval;
+        }
+        double sum = 0.0;
+        for (long i = a; i < b; i++) {
+            sum += power[(int) i];
+        }
+        return sum;
+    }
+
+    public double getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Time span (s) covered by the samples
+     */
+    public double getDuration() {
+        return interpolation == Interpolation.STEP ? n * interval
+                : Math.max(0, n - 1) * interval;
+    }
+}
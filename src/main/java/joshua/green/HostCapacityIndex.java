@@ -0,0 +1,199 @@
+package joshua.green;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Segment tree over the free capacity (PEs, RAM, BW) of a datacenter's hosts.
+ *
+ * Each node keeps the maximum free amount of every resource in its subtree, plus the
+ * minimum free PE count for best-fit bounds. A host is refreshed in O(log H) when a VM
+ * is placed on, removed from or migrated to it, so placement queries no longer scan
+ * the host list:
+ *  - firstFit: leftmost host that fits the demand
+ *  - bestFit: host that leaves the fewest free PEs (ties go to the lower index)
+ *  - isFeasible: whether any host fits
+ *
+ * Queries prune on the per-resource maxima, which is O(log H) when one resource is the
+ * binding constraint; subtrees whose maxima fit but no single host does are backtracked.
+ */
+public class HostCapacityIndex {
+
+    private final List<Host> hosts;
+    private final Map<Host, Integer> positions = new IdentityHashMap<>();
+    private final int leaves;           // Power of two >= host count
+
+    // Tree nodes, root at 1, leaf i at leaves + i
+    private final int[] maxPes;
+    private final long[] maxRam;
+    private final long[] maxBw;
+    private final int[] minPes;
+
+    public HostCapacityIndex(List<? extends Host> hostList) {
+        this.hosts = new ArrayList<>(hostList);
+        int size = 1;
+        while (size < Math.max(1, hosts.size())) size <<= 1;
+        this.leaves = size;
+        this.maxPes = new int[2 * size];
+        this.maxRam = new long[2 * size];
+        this.maxBw = new long[2 * size];
+        this.minPes = new int[2 * size];
+        // Padding leaves never fit
+        Arrays.fill(maxPes, -1);
+        Arrays.fill(maxRam, -1);
+        Arrays.fill(maxBw, -1);
+        Arrays.fill(minPes, Integer.MAX_VALUE);
+
+        for (int i = 0; i < hosts.size(); i++) {
+            positions.put(hosts.get(i), i);
+        }
+        refreshAll();
+    }
+
+    /**
+     * Re-read every host and rebuild the tree, O(H)
+     */
+    public void refreshAll() {
+        for (int i = 0; i < hosts.size(); i++) {
+            readLeaf(i);
+        }
+        for (int node = leaves - 1; node >= 1; node--) {
+            pull(node);
+        }
+    }
+
+    /**
+     * Re-read one host after its VM set changed, O(log H); unknown hosts are ignored
+     */
+    public void update(Host host) {
+        Integer i = host == null ? null : positions.get(host);
+        if (i != null) update(i);
+    }
+
+    public void update(int hostIndex) {
+        readLeaf(hostIndex);
+        for (int node = (leaves + hostIndex) >> 1; node >= 1; node >>= 1) {
+            pull(node);
+        }
+    }
+
+    /**
+     * Index of the first host (in list order) that fits the demand, or -1
+     */
+    public int firstFit(int pes, long ram, long bw) {
+        return firstFit(1, pes, ram, bw);
+    }
+
+    /**
+     * Index of the fitting host that leaves the fewest free PEs, or -1
+     */
+    public int bestFit(int pes, long ram, long bw) {
+        int[] best = {-1, Integer.MAX_VALUE};
+        bestFit(1, pes, ram, bw, best);
+        return best[0];
+    }
+
+    public boolean isFeasible(int pes, long ram, long bw) {
+        return firstFit(pes, ram, bw) >= 0;
+    }
+
+    public int firstFit(Vm vm) {
+        return firstFit((int) vm.getPesNumber(), vm.getRam().getCapacity(), vm.getBw().getCapacity());
+    }
+
+    public int bestFit(Vm vm) {
+        return bestFit((int) vm.getPesNumber(), vm.getRam().getCapacity(), vm.getBw().getCapacity());
+    }
+
+    /**
+     * Per-host feasibility, O(H); intended for action masks
+     */
+    public boolean[] feasibilityMask(int pes, long ram, long bw) {
+        boolean[] mask = new boolean[hosts.size()];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = fits(leaves + i, pes, ram, bw);
+        }
+        return mask;
+    }
+
+    public int getFreePes(int hostIndex) {
+        return Math.max(0, maxPes[leaves + hostIndex]);
+    }
+
+    public long getFreeRam(int hostIndex) {
+        return Math.max(0, maxRam[leaves + hostIndex]);
+    }
+
+    public long getFreeBw(int hostIndex) {
+        return Math.max(0, maxBw[leaves + hostIndex]);
+    }
+
+    /**
+     * Largest free PE count on any single host, O(1)
+     */
+    public int getMaxFreePes() {
+        return Math.max(0, maxPes[1]);
+    }
+
+    public Host getHost(int hostIndex) {
+        return hosts.get(hostIndex);
+    }
+
+    public int size() {
+        return hosts.size();
+    }
+
+    private int firstFit(int node, int pes, long ram, long bw) {
+        if (!fits(node, pes, ram, bw)) return -1;
+        if (node >= leaves) return node - leaves;
+        int left = firstFit(2 * node, pes, ram, bw);
+        return left >= 0 ? left : firstFit(2 * node + 1, pes, ram, bw);
+    }
+
+    private void bestFit(int node, int pes, long ram, long bw, int[] best) {
+        if (!fits(node, pes, ram, bw)) return;
+        // Leftover PEs cannot be lower than the subtree minimum
+        if (Math.max(pes, minPes[node]) - pes >= best[1]) return;
+        if (node >= leaves) {
+            best[0] = node - leaves;
+            best[1] = maxPes[node] - pes;
+            return;
+        }
+        // Left first, so that ties keep the lower index
+        bestFit(2 * node, pes, ram, bw, best);
+        bestFit(2 * node + 1, pes, ram, bw, best);
+    }
+
+    private boolean fits(int node, int pes, long ram, long bw) {
+        return maxPes[node] >= pes && maxRam[node] >= ram && maxBw[node] >= bw;
+    }
+
+    private void readLeaf(int i) {
+        Host host = hosts.get(i);
+        int node = leaves + i;
+        if (host.isFailed()) {
+            maxPes[node] = -1;
+            maxRam[node] = -1;
+            maxBw[node] = -1;
+        } else {
+            maxPes[node] = host.getFreePesNumber();
+            maxRam[node] = host.getRam().getAvailableResource();
+            maxBw[node] = host.getBw().getAvailableResource();
+        }
+        minPes[node] = maxPes[node];
+    }
+
+    private void pull(int node) {
+        int l = 2 * node, r = 2 * node + 1;
+        maxPes[node] = Math.max(maxPes[l], maxPes[r]);
+        maxRam[node] = Math.max(maxRam[l], maxRam[r]);
+        maxBw[node] = Math.max(maxBw[l], maxBw[r]);
+        minPes[node] = Math.min(minPes[l], minPes[r]);
+    }
+}
@@ -0,0 +1,116 @@
+package joshua.green;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * Binary max-heap over a fixed set of ids 0..n-1 with updatable keys.
+ *
+ * Order: higher score first, then lower tie-break value, then lower id. Every id keeps
+ * its heap position, so changing one id's key is O(log n) and the best id is O(1).
+ */
+public class IndexedMaxHeap {
+
+    private final int[] heap;         // heap slot -> id
+    private final int[] position;     // id -> heap slot, -1 if absent
+    private final double[] score;
+    private final long[] tieBreak;
+    private int size = 0;
+
+    public IndexedMaxHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        score = new double[capacity];
+        tieBreak = new long[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Insert the id or change its key, O(log n)
+     */
+    public void set(int id, double newScore, long newTieBreak) {
+        if (Double.isNaN(newScore)) newScore = Double.NEGATIVE_INFINITY;
+        score[id] = newScore;
+        tieBreak[id] = newTieBreak;
+        int slot = position[id];
+        if (slot < 0) {
+            slot = size++;
+            heap[slot] = id;
+            position[id] = slot;
+        }
+        siftDown(siftUp(slot));
+    }
+
+    public boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    /**
+     * Best id, or -1 when empty
+     */
+    public int peek() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    public double getScore(int id) {
+        return score[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Visit ids from best to worst until the visitor returns false. Visiting k ids costs
+     * O(k log k), independent of the heap size.
+     */
+    public void visitDescending(IntPredicate visitor) {
+        if (size == 0) return;
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((a, b) -> before(heap[a], heap[b]) ? -1 : 1);
+        frontier.add(0);
+        while (!frontier.isEmpty()) {
+            int slot = frontier.poll();
+            if (!visitor.test(heap[slot])) return;
+            int left = 2 * slot + 1;
+            if (left < size) frontier.add(left);
+            if (left + 1 < size) frontier.add(left + 1);
+        }
+    }
+
+    private boolean before(int a, int b) {
+        if (score[a] != score[b]) return score[a] > score[b];
+        if (tieBreak[a] != tieBreak[b]) return tieBreak[a] < tieBreak[b];
+        return a < b;
+    }
+
+    private int siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (!before(heap[slot], heap[parent])) break;
+            swap(slot, parent);
+            slot = parent;
+        }
+        return slot;
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int left = 2 * slot + 1;
+            if (left >= size) return;
+            int best = left;
+            if (left + 1 < size && before(heap[left + 1], heap[left])) best = left + 1;
+            if (!before(heap[best], heap[slot])) return;
+            swap(slot, best);
+            slot = best;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = heap[i], b = heap[j];
+        heap[i] = b;
+        heap[j] = a;
+        position[b] = i;
+        position[a] = j;
+    }
+}
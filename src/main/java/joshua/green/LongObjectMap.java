@@ -0,0 +1,139 @@
+package joshua.green;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive long keys to objects (single-threaded).
+ *
+ * Keys are stored unboxed and probed linearly, so put/get/remove allocate nothing once the
+ * table is large enough. Removal shifts the following entries back instead of leaving
+ * tombstones, which keeps probe chains short under the insert/remove churn of pending
+ * decisions. Dense ids (as produced by the cloudlet loaders) spread evenly over the table.
+ */
+public class LongObjectMap<V> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;    // null = empty slot
+    private int mask;
+    private int size = 0;
+
+    public LongObjectMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * @return the previous value, or null
+     */
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("null values are not supported");
+        int slot = find(key);
+        if (values[slot] != null) {
+            V previous = valueAt(slot);
+            values[slot] = value;
+            return previous;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > (mask + 1) * 3 / 4) resize((mask + 1) * 2);
+        return null;
+    }
+
+    public V get(long key) {
+        return valueAt(find(key));
+    }
+
+    public boolean containsKey(long key) {
+        return values[find(key)] != null;
+    }
+
+    /**
+     * @return the removed value, or null if the key was absent
+     */
+    public V remove(long key) {
+        int slot = find(key);
+        if (values[slot] == null) return null;
+        V removed = valueAt(slot);
+        size--;
+
+        // Backward-shift deletion: move later entries of the chain into the hole
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (values[next] != null) {
+            int home = hash(keys[next]);
+            // Entry may move only if its home slot is not cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        values[hole] = null;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Slot holding the key, or the empty slot where it would be inserted
+     */
+    private int find(long key) {
+        int slot = hash(key);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) values[slot];
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) capacity <<= 1;
+        return capacity;
+    }
+}
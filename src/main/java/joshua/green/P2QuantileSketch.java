@@ -0,0 +1,155 @@
+package joshua.green;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * P² quantile estimator (Jain &amp; Chlamtac, 1985) for a fixed set of probabilities.
+ *
+ * Each tracked probability keeps five markers whose heights are adjusted with a piecewise
+ * parabolic fit as values stream in, so memory is constant and every update is O(1) per
+ * probability. No samples are stored beyond the first five, which makes it suitable for
+ * heavy-tailed inputs such as Borg job lengths.
+ */
+public class P2QuantileSketch implements QuantileSketch {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Estimator[] estimators;
+    private long count = 0;
+
+    private P2QuantileSketch(Estimator[] estimators, long count) {
+        this.estimators = estimators;
+        this.count = count;
+    }
+
+    public P2QuantileSketch(double... probabilities) {
+        if (probabilities.length == 0) throw new IllegalArgumentException("at least one probability required");
+        estimators = new Estimator[probabilities.length];
+        for (int i = 0; i < probabilities.length; i++) {
+            double p = probabilities[i];
+            if (p < 0.0 || p > 1.0) throw new IllegalArgumentException("probability out of [0, 1]: " + p);
+            estimators[i] = new Estimator(p);
+        }
+    }
+
+    @Override
+    public void add(double value) {
+        if (Double.isNaN(value)) return;
+        count++;
+        for (Estimator e : estimators) {
+            e.add(value);
+        }
+    }
+
+    @Override
+    public double quantile(double p) {
+        Estimator best = estimators[0];
+        for (Estimator e : estimators) {
+            if (Math.abs(e.p - p) < Math.abs(best.p - p)) best = e;
+        }
+        return best.estimate();
+    }
+
+    @Override
+    public long count() {
+        return count;
+    }
+
+    @Override
+    public P2QuantileSketch copy() {
+        Estimator[] copies = new Estimator[estimators.length];
+        for (int i = 0; i < estimators.length; i++) {
+            copies[i] = estimators[i].copy();
+        }
+        return new P2QuantileSketch(copies, count);
+    }
+
+    private static final class Estimator implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final double p;
+        final double[] q = new double[5];      // Marker heights
+        final int[] n = new int[5];            // Marker positions (0-based)
+        final double[] np = new double[5];     // Desired positions
+        final double[] dn;                     // Desired position increments
+        int count = 0;
+
+        Estimator(double p) {
+            this.p = p;
+            this.dn = new double[]{0.0, p / 2, p, (1 + p) / 2, 1.0};
+        }
+
+        Estimator copy() {
+            Estimator e = new Estimator(p);
+            System.arraycopy(q, 0, e.q, 0, 5);
+            System.arraycopy(n, 0, e.n, 0, 5);
+            System.arraycopy(np, 0, e.np, 0, 5);
+            e.count = count;
+            return e;
+        }
+
+        void add(double x) {
+            if (count < 5) {
+                q[count++] = x;
+                if (count == 5) {
+                    Arrays.sort(q);
+                    for (int i = 0; i < 5; i++) n[i] = i;
+                    np[0] = 0;
+                    np[1] = 2 * p;
+                    np[2] = 4 * p;
+                    np[3] = 2 + 2 * p;
+                    np[4] = 4;
+                }
+                return;
+            }
+            count++;
+
+            // Cell containing x; extremes move the end markers
+            int k;
+            if (x < q[0]) {
+                q[0] = x;
+                k = 0;
+            } else if (x >= q[4]) {
+                q[4] = x;
+                k = 3;
+            } else {
+                k = 0;
+                while (k < 3 && x >= q[k + 1]) k++;
+            }
+            for (int i = k + 1; i < 5; i++) n[i]++;
+            for (int i = 0; i < 5; i++) np[i] += dn[i];
+
+            // Adjust the three middle markers towards their desired positions
+            for (int i = 1; i <= 3; i++) {
+                double d = np[i] - n[i];
+                if ((d >= 1 && n[i + 1] - n[i] > 1) || (d <= -1 && n[i - 1] - n[i] < -1)) {
+                    int s = d > 0 ? 1 : -1;
+                    double candidate = parabolic(i, s);
+                    q[i] = (q[i - 1] < candidate && candidate < q[i + 1]) ? candidate : linear(i, s);
+                    n[i] += s;
+                }
+            }
+        }
+
+        double estimate() {
+            if (count == 0) return Double.NaN;
+            if (count < 5) {
+                double[] seen = Arrays.copyOf(q, count);
+                Arrays.sort(seen);
+                return seen[(int) Math.round(p * (count - 1))];
+            }
+            return q[2];
+        }
+
+        private double parabolic(int i, int s) {
+            return q[i] + (double) s / (n[i + 1] - n[i - 1])
+                    * ((n[i] - n[i - 1] + s) * (q[i + 1] - q[i]) / (n[i + 1] - n[i])
+                    + (n[i + 1] - n[i] - s) * (q[i] - q[i - 1]) / (n[i] - n[i - 1]));
+        }
+
+        private double linear(int i, int s) {
+            return q[i] + s * (q[i + s] - q[i]) / (n[i + s] - n[i]);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package joshua.green;
+
+import java.io.Serializable;
+
+/**
+ * Constant-memory streaming quantile estimator used by {@link StateNormalizer}.
+ *
+ * Implementations decide which probabilities they can answer; asking for an untracked
+ * probability returns the estimate of the closest tracked one. Sketches are serializable so
+ * normalizer statistics can be checkpointed and carried across episodes.
+ */
+public interface QuantileSketch extends Serializable {
+
+    void add(double value);
+
+    /**
+     * Estimated value at probability p in [0, 1]; NaN before the first value
+     */
+    double quantile(double p);
+
+    long count();
+
+    /**
+     * Independent deep copy
+     */
+    QuantileSketch copy();
+}
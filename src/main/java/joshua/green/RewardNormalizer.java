@@ -1,10 +1,19 @@
 package joshua.green;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Running reward normalizer: rewards are only scaled during warmup, then standardized with
+ * a slowly adapting mean/variance seeded from the warmup statistics.
+ *
+ * The last BUFFER_SIZE rewards are kept in a primitive ring buffer with a running sum and
+ * sum of squares, plus monotonic deques for the window min/max, so normalize() and
+ * getStats() are O(1) and allocation-free.
+ */
 @Getter
 public class RewardNormalizer {
     private double runningMean = 0;
@@ -14,11 +23,32 @@ public class RewardNormalizer {
 
     // Increased warmup period
     private final int warmup_episodes = 10;
-    private List<Double> warmup_rewards = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final double[] warmup_rewards = new double[warmup_episodes * 100];
+    @Getter(AccessLevel.NONE)
+    private int warmupSize = 0;
 
     // Add reward buffer for better statistics
     private static final int BUFFER_SIZE = 1000;
-    private List<Double> rewardBuffer = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final double[] rewardBuffer = new double[BUFFER_SIZE];
+    @Getter(AccessLevel.NONE)
+    private long rewardSeq = 0;            // Rewards pushed since reset; slot = seq % BUFFER_SIZE
+    @Getter(AccessLevel.NONE)
+    private double windowSum = 0;
+    @Getter(AccessLevel.NONE)
+    private double windowSumSq = 0;
+
+    // Monotonic deques over the window (reward sequence numbers, ring of BUFFER_SIZE):
+    // values decrease from head to tail for max, increase for min
+    @Getter(AccessLevel.NONE)
+    private final long[] maxDeque = new long[BUFFER_SIZE];
+    @Getter(AccessLevel.NONE)
+    private final long[] minDeque = new long[BUFFER_SIZE];
+    @Getter(AccessLevel.NONE)
+    private int maxHead = 0, maxSize = 0;
+    @Getter(AccessLevel.NONE)
+    private int minHead = 0, minSize = 0;
 
     // Control parameters
     private final double learningRate = 0.001;  // Slower adaptation
@@ -27,7 +57,7 @@ public class RewardNormalizer {
     public double normalize(double reward) {
         // During warmup, collect data without normalization
         if (count < warmup_episodes * 100) {
-            warmup_rewards.add(reward);
+            warmup_rewards[warmupSize++] = reward;
             count++;
             // Return scaled but not normalized reward during warmup
             return reward * 0.01;  // Gentle scaling
@@ -39,10 +69,7 @@ public class RewardNormalizer {
         }
 
         // Add to buffer for robust statistics
-        rewardBuffer.add(reward);
-        if (rewardBuffer.size() > BUFFER_SIZE) {
-            rewardBuffer.remove(0);
-        }
+        pushToWindow(reward);
 
         count++;
 
@@ -67,27 +94,29 @@ public class RewardNormalizer {
     }
 
     private void initializeStatistics() {
-        if (warmup_rewards.isEmpty()) return;
+        if (warmupSize == 0) return;
 
         // Calculate robust statistics from warmup data
         double sum = 0;
         double min = Double.MAX_VALUE;
         double max = Double.MIN_VALUE;
 
-        for (double r : warmup_rewards) {
+        for (int i = 0; i < warmupSize; i++) {
+            double r = warmup_rewards[i];
             sum += r;
             min = Math.min(min, r);
             max = Math.max(max, r);
         }
 
-        runningMean = sum / warmup_rewards.size();
+        runningMean = sum / warmupSize;
 
         // Calculate variance
         double varSum = 0;
-        for (double r : warmup_rewards) {
-            varSum += Math.pow(r - runningMean, 2);
+        for (int i = 0; i < warmupSize; i++) {
+            double d = warmup_rewards[i] - runningMean;
+            varSum += d * d;
         }
-        runningVar = varSum / warmup_rewards.size();
+        runningVar = varSum / warmupSize;
 
         // Add robustness: ensure variance is not too small
         runningVar = Math.max(runningVar, 0.1);
@@ -100,8 +129,78 @@ public class RewardNormalizer {
         runningMean = 0;
         runningVar = 1;
         count = 0;
-        warmup_rewards.clear();
-        rewardBuffer.clear();
+        warmupSize = 0;
+        rewardSeq = 0;
+        windowSum = 0;
+        windowSumSq = 0;
+        maxHead = maxSize = 0;
+        minHead = minSize = 0;
+    }
+
+    /**
+     * Append to the window, evicting the oldest reward once full; amortized O(1)
+     */
+    private void pushToWindow(double reward) {
+        long seq = rewardSeq++;
+        int slot = (int) (seq % BUFFER_SIZE);
+        if (seq >= BUFFER_SIZE) {
+            double evicted = rewardBuffer[slot];
+            windowSum -= evicted;
+            windowSumSq -= evicted * evicted;
+        }
+        rewardBuffer[slot] = reward;
+        windowSum += reward;
+        windowSumSq += reward * reward;
+
+        // Re-sum once per window turn so add/subtract rounding cannot build up
+        if (slot == BUFFER_SIZE - 1) {
+            windowSum = 0;
+            windowSumSq = 0;
+            for (double r : rewardBuffer) {
+                windowSum += r;
+                windowSumSq += r * r;
+            }
+        }
+
+        long oldest = seq - BUFFER_SIZE + 1;
+        if (maxSize > 0 && maxDeque[maxHead] < oldest) { maxHead = (maxHead + 1) % BUFFER_SIZE; maxSize--; }
+        if (minSize > 0 && minDeque[minHead] < oldest) { minHead = (minHead + 1) % BUFFER_SIZE; minSize--; }
+
+        while (maxSize > 0 && valueAt(maxDeque[(maxHead + maxSize - 1) % BUFFER_SIZE]) <= reward) maxSize--;
+        maxDeque[(maxHead + maxSize++) % BUFFER_SIZE] = seq;
+        while (minSize > 0 && valueAt(minDeque[(minHead + minSize - 1) % BUFFER_SIZE]) >= reward) minSize--;
+        minDeque[(minHead + minSize++) % BUFFER_SIZE] = seq;
+    }
+
+    private double valueAt(long seq) {
+        return rewardBuffer[(int) (seq % BUFFER_SIZE)];
+    }
+
+    private int windowSize() {
+        return (int) Math.min(rewardSeq, BUFFER_SIZE);
+    }
+
+    /**
+     * Warmup rewards collected so far (copy)
+     */
+    public List<Double> getWarmup_rewards() {
+        List<Double> rewards = new ArrayList<>(warmupSize);
+        for (int i = 0; i < warmupSize; i++) {
+            rewards.add(warmup_rewards[i]);
+        }
+        return rewards;
+    }
+
+    /**
+     * Rewards in the current window, oldest first (copy)
+     */
+    public List<Double> getRewardBuffer() {
+        int n = windowSize();
+        List<Double> rewards = new ArrayList<>(n);
+        for (long seq = rewardSeq - n; seq < rewardSeq; seq++) {
+            rewards.add(valueAt(seq));
+        }
+        return rewards;
     }
 
     public double getMean() {
@@ -114,26 +213,17 @@ public class RewardNormalizer {
 
     // Get recent statistics for debugging
     public String getStats() {
-        if (rewardBuffer.isEmpty()) {
+        int n = windowSize();
+        if (n == 0) {
             return "No data yet";
         }
 
-        double recentMean = rewardBuffer.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
-
-        double recentMin = rewardBuffer.stream()
-                .mapToDouble(Double::doubleValue)
-                .min()
-                .orElse(0.0);
-
-        double recentMax = rewardBuffer.stream()
-                .mapToDouble(Double::doubleValue)
-                .max()
-                .orElse(0.0);
+        double recentMean = windowSum / n;
+        double recentMin = valueAt(minDeque[minHead]);
+        double recentMax = valueAt(maxDeque[maxHead]);
+        double recentStd = Math.sqrt(Math.max(0.0, windowSumSq / n - recentMean * recentMean));
 
-        return String.format("Recent stats: mean=%.3f, range=[%.3f, %.3f], running_mean=%.3f, running_std=%.3f",
-                recentMean, recentMin, recentMax, runningMean, Math.sqrt(runningVar));
+        return String.format("Recent stats: mean=%.3f, std=%.3f, range=[%.3f, %.3f], running_mean=%.3f, running_std=%.3f",
+                recentMean, recentStd, recentMin, recentMax, runningMean, Math.sqrt(runningVar));
     }
 }
\ No newline at end of file
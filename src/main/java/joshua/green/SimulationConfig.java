@@ -112,6 +112,51 @@ public class SimulationConfig {
     @Parameter(names = {"--initial-scale-factor"}, description = "initial scale factor array")
     private double[] initialScaleFactorArray = {0.015, 0.001, 0.008, 0.002, 0.003, 0.012, 0.005, 0.002, 0.01, 0.006};
 
+    @Parameter(names = {"--journal-dir"}, description = "决策日志目录（为空则不记录）")
+    private String journalDir = "";
+
+    @Parameter(names = {"--prefetch"}, description = "预取下一批到达任务的全局动作（流水线决策）")
+    private boolean prefetch = false;
+
+    @Parameter(names = {"--prefetch-depth"}, description = "预取的后续任务数量")
+    private int prefetchDepth = 8;
+
+    @Parameter(names = {"--prefetch-max-staleness"}, description = "预取结果允许的最大陈旧时间（仿真秒）")
+    private double prefetchMaxStaleness = 1.0;
+
+    @Parameter(names = {"--rl-timeout-ms"}, description = "决策/经验请求的连接与读取超时（毫秒，0为系统默认）")
+    private int rlTimeoutMs = 0;
+
+    @Parameter(names = {"--breaker-failures"}, description = "连续失败多少次后熔断（0为不启用熔断）")
+    private int breakerFailures = 0;
+
+    @Parameter(names = {"--breaker-slow-ms"}, description = "超过该耗时（毫秒）的调用计为失败")
+    private long breakerSlowMs = 1000;
+
+    @Parameter(names = {"--breaker-open-ms"}, description = "熔断后健康探测间隔（毫秒）")
+    private long breakerOpenMs = 5000;
+
+    @Parameter(names = {"--fallback-policy"}, description = "熔断时的后备策略: bestfit, roundrobin, random")
+    private String fallbackPolicy = "bestfit";
+
+    @Parameter(names = {"--mask-protocol"}, description = "开启决策前的不可行动作屏蔽（无VM的主机、饱和的DC），需Python服务器支持带 action_mask 的决策请求（默认关闭，请求格式与旧版一致）")
+    private boolean maskProtocol = false;
+
+    @Parameter(names = {"--mask-queue-per-vm"}, description = "每个VM未完成任务数达到该值时视为DC饱和（0为只屏蔽没有VM的DC）")
+    private double maskQueuePerVm = 10.0;
+
+    @Parameter(names = {"--candidate-k"}, description = "全局决策只考虑预筛选得分最高的 k 个DC（状态与动作维度固定为 k，0为考虑全部DC）")
+    private int candidateK = 0;
+
+    @Parameter(names = {"--region-size"}, description = "区域层：每个区域包含的DC数，全局智能体先选区域、区域再选DC（0为不分区域）")
+    private int regionSize = 0;
+
+    @Parameter(names = {"--normalizer-file"}, description = "状态归一化统计的持久化文件：启动时若存在则加载，每个episode结束后写回（为空则只在episode之间传递）")
+    private String normalizerFile = "";
+
+    @Parameter(names = {"--freeze-normalizer"}, description = "冻结状态归一化统计（只读取不更新）")
+    private boolean freezeNormalizer = false;
+
     @Parameter(names = {"--carbon-factor"}, description = "Carbon emission factor kg CO2/kWh (default: 0.5)")
     private double carbonFactor = 0.5;
     /**
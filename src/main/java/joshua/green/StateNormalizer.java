@@ -1,12 +1,33 @@
 package joshua.green;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 public class StateNormalizer {
     // Running statistics for adaptive normalization
     private Map<String, RunningStats> featureStats = new HashMap<>();
 
+    // Streaming quantile sketches for heavy-tailed features (constant memory per feature)
+    private final Map<String, QuantileSketch> featureSketches = new HashMap<>();
+    private final Supplier<QuantileSketch> sketchFactory;
+
+    // Percentiles used for robust scaling, e.g. [p5, p95] instead of all-time [min, max]
+    private final double lowPercentile;
+    private final double highPercentile;
+
+    public static final double DEFAULT_LOW_PERCENTILE = 0.05;
+    public static final double DEFAULT_HIGH_PERCENTILE = 0.95;
+
+    // Frozen: statistics are read but never updated, so the input scaling stays fixed
+    private boolean frozen = false;
+
+    // While recording, updates are collected here instead of applied (null = not recording)
+    private Observations recording = null;
+
     // Minimum observations before using adaptive normalization
     private static final int MIN_OBSERVATIONS = 100;
 
@@ -20,7 +41,9 @@ public class StateNormalizer {
     private static final double GREEN_ENERGY_STOCK_SCALE = 100000.0;
 
     // Running statistics helper class
-    private static class RunningStats {
+    private static class RunningStats implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private double mean = 0.0;
         private double m2 = 0.0;
         private int count = 0;
@@ -44,15 +67,64 @@ public class StateNormalizer {
         double getStd() {
             return Math.sqrt(getVariance());
         }
+
+        RunningStats copy() {
+            RunningStats c = new RunningStats();
+            c.mean = mean;
+            c.m2 = m2;
+            c.count = count;
+            c.min = min;
+            c.max = max;
+            return c;
+        }
+    }
+
+    public StateNormalizer() {
+        this(DEFAULT_LOW_PERCENTILE, DEFAULT_HIGH_PERCENTILE);
+    }
+
+    public StateNormalizer(double lowPercentile, double highPercentile) {
+        this(lowPercentile, highPercentile, () -> new P2QuantileSketch(lowPercentile, highPercentile));
+    }
+
+    /**
+     * @param sketchFactory creates one sketch per feature; it must answer both percentiles
+     */
+    public StateNormalizer(double lowPercentile, double highPercentile, Supplier<QuantileSketch> sketchFactory) {
+        if (!(0.0 <= lowPercentile && lowPercentile < highPercentile && highPercentile <= 1.0)) {
+            throw new IllegalArgumentException("invalid percentile range [" + lowPercentile + ", " + highPercentile + "]");
+        }
+        this.lowPercentile = lowPercentile;
+        this.highPercentile = highPercentile;
+        this.sketchFactory = sketchFactory;
     }
 
     private RunningStats getOrCreateStats(String feature) {
         return featureStats.computeIfAbsent(feature, k -> new RunningStats());
     }
 
+    private RunningStats observeStats(String feature, double value) {
+        RunningStats stats = getOrCreateStats(feature);
+        if (recording != null) {
+            recording.add(feature, value, false);
+        } else if (!frozen) {
+            stats.update(value);
+        }
+        return stats;
+    }
+
+    private QuantileSketch observe(String feature, double value) {
+        QuantileSketch sketch = featureSketches.computeIfAbsent(feature, k -> sketchFactory.get());
+        if (recording != null) {
+            recording.add(feature, value, true);
+        } else if (!frozen) {
+            sketch.add(value);
+        }
+        return sketch;
+    }
+
     public double normalizeGreenSurplus(double surplus) {
-        RunningStats stats = getOrCreateStats("green_surplus");
-        stats.update(surplus);
+        RunningStats stats = observeStats("green_surplus", surplus);
 
         if (stats.count >= MIN_OBSERVATIONS && stats.getStd() > 1e-6) {
             // Z-score normalization with clipping
@@ -65,21 +137,22 @@ public class StateNormalizer {
     }
 
     public double normalizeGreenStock(double stock) {
-        RunningStats stats = getOrCreateStats("green_stock");
-        stats.update(stock);
+        RunningStats stats = observeStats("green_stock", stock);
+        QuantileSketch sketch = observe("green_stock", stock);
 
-        if (stats.count >= MIN_OBSERVATIONS && stats.max > stats.min) {
-            // Min-max normalization to [0, 1]
-            double normalized = (stock - stats.min) / (stats.max - stats.min + 1e-8);
-            return normalized * 2.0 - 1.0;  // Map to [-1, 1]
+        double low = sketch.quantile(lowPercentile);
+        double high = sketch.quantile(highPercentile);
+        if (stats.count >= MIN_OBSERVATIONS && high > low) {
+            // Percentile range normalization; a single outlier no longer compresses the rest
+            double normalized = (stock - low) / (high - low + 1e-8);
+            return Math.max(-1.0, Math.min(1.0, normalized * 2.0 - 1.0));  // Map to [-1, 1]
         } else {
             return 2.0 / (1.0 + Math.exp(-stock / GREEN_ENERGY_STOCK_SCALE)) - 1.0;
         }
     }
 
     public double normalizeMips(double mips) {
-        RunningStats stats = getOrCreateStats("mips");
-        stats.update(mips);
+        RunningStats stats = observeStats("mips", mips);
 
         if (stats.count >= MIN_OBSERVATIONS && stats.max > 0) {
             return mips / stats.max;  // Normalize to [0, 1]
@@ -94,12 +167,12 @@ public class StateNormalizer {
     }
 
     public double normalizeCpuRequirement(double requirement) {
-        RunningStats stats = getOrCreateStats("cpu_req");
-        stats.update(requirement);
+        RunningStats stats = observeStats("cpu_req", requirement);
+        QuantileSketch sketch = observe("cpu_req", requirement);
 
-        if (stats.count >= MIN_OBSERVATIONS) {
-            // Use 95th percentile as upper bound for robustness
-            double scale = stats.mean + 2 * stats.getStd();
+        double scale = sketch.quantile(highPercentile);
+        if (stats.count >= MIN_OBSERVATIONS && scale > 0) {
+            // Estimated upper percentile as bound; mean + 2*std is not a percentile for heavy tails
             return Math.min(requirement / scale, 1.0);
         } else {
             return Math.min(requirement / CPU_REQUIREMENT_SCALE, 1.0);
@@ -107,8 +180,7 @@ public class StateNormalizer {
     }
 
     public double normalizeMemRequirement(double requirement) {
-        RunningStats stats = getOrCreateStats("mem_req");
-        stats.update(requirement);
+        RunningStats stats = observeStats("mem_req", requirement);
 
         if (stats.count >= MIN_OBSERVATIONS && stats.max > 0) {
             return requirement / stats.max;
@@ -118,8 +190,7 @@ public class StateNormalizer {
     }
 
     public double normalizeQueueLength(int length) {
-        RunningStats stats = getOrCreateStats("queue_length");
-        stats.update(length);
+        RunningStats stats = observeStats("queue_length", length);
 
         if (stats.count >= MIN_OBSERVATIONS) {
             // Use exponential decay for queue length
@@ -137,7 +208,114 @@ public class StateNormalizer {
     }
 
     public void updateObservation(String feature, double value) {
-        getOrCreateStats(feature).update(value);
+        observeStats(feature, value);
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+    }
+
+    /* ===================== Deferred observations ===================== */
+
+    /**
+     * Raw feature values of one state, recorded instead of applied
+     */
+    public static final class Observations {
+        private final List<String> features = new ArrayList<>();
+        private final List<Double> values = new ArrayList<>();
+        private final List<Boolean> sketched = new ArrayList<>();
+
+        private void add(String feature, double value, boolean sketch) {
+            features.add(feature);
+            values.add(value);
+            sketched.add(sketch);
+        }
+
+        public int size() {
+            return features.size();
+        }
+    }
+
+    /**
+     * Normalize as usual but only record the updates until {@link #stopRecording()}, e.g. for a
+     * speculative state that may be thrown away
+     */
+    public void startRecording() {
+        recording = new Observations();
+    }
+
+    public Observations stopRecording() {
+        Observations recorded = recording;
+        recording = null;
+        return recorded;
+    }
+
+    /**
+     * Apply recorded updates as if they were observed now; no-op while frozen
+     */
+    public void replay(Observations observations) {
+        for (int i = 0; i < observations.size(); i++) {
+            if (observations.sketched.get(i)) {
+                observe(observations.features.get(i), observations.values.get(i));
+            } else {
+                observeStats(observations.features.get(i), observations.values.get(i));
+            }
+        }
+    }
+
+    /* ===================== Checkpointing ===================== */
+
+    /**
+     * Deep copy of all statistics, independent of further updates
+     */
+    public Snapshot snapshot() {
+        Map<String, RunningStats> stats = new HashMap<>();
+        featureStats.forEach((k, v) -> stats.put(k, v.copy()));
+        Map<String, QuantileSketch> sketches = new HashMap<>();
+        featureSketches.forEach((k, v) -> sketches.put(k, v.copy()));
+        return new Snapshot(stats, sketches, lowPercentile, highPercentile);
+    }
+
+    /**
+     * Replaces all statistics with a copy of the snapshot (which stays reusable). Sketches are
+     * only taken over when they were built for the same percentiles; otherwise they restart
+     * empty and the features fall back to default scales until enough observations arrive.
+     */
+    public void restore(Snapshot snapshot) {
+        featureStats.clear();
+        snapshot.stats.forEach((k, v) -> featureStats.put(k, v.copy()));
+        featureSketches.clear();
+        if (snapshot.lowPercentile == lowPercentile && snapshot.highPercentile == highPercentile) {
+            snapshot.sketches.forEach((k, v) -> featureSketches.put(k, v.copy()));
+        }
+    }
+
+    /**
+     * Immutable normalizer state; serializable so NormalizerCheckpoint can write it to disk
+     */
+    public static final class Snapshot implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, RunningStats> stats;
+        private final Map<String, QuantileSketch> sketches;
+        private final double lowPercentile;
+        private final double highPercentile;
+
+        private Snapshot(Map<String, RunningStats> stats, Map<String, QuantileSketch> sketches,
+                         double lowPercentile, double highPercentile) {
+            this.stats = stats;
+            this.sketches = sketches;
+            this.lowPercentile = lowPercentile;
+            this.highPercentile = highPercentile;
+        }
+
+        public int getFeatureCount() {
+            return stats.size();
+        }
     }
 
     public void printStatistics() {
@@ -147,6 +325,12 @@ public class StateNormalizer {
             if (stats.count > 0) {
                 System.out.printf("%s: count=%d, mean=%.2f, std=%.2f, min=%.2f, max=%.2f%n",
                         entry.getKey(), stats.count, stats.mean, stats.getStd(), stats.min, stats.max);
+                QuantileSketch sketch = featureSketches.get(entry.getKey());
+                if (sketch != null) {
+                    System.out.printf("    p%.0f=%.2f, p%.0f=%.2f%n",
+                            lowPercentile * 100, sketch.quantile(lowPercentile),
+                            highPercentile * 100, sketch.quantile(highPercentile));
+                }
             }
         }
     }
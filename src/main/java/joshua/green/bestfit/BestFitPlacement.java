@@ -0,0 +1,223 @@
+package joshua.green.bestfit;
+
+import joshua.green.IndexedMaxHeap;
+import joshua.green.placement.FleetSnapshot;
+import joshua.green.placement.PlacementPolicy;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+
+import java.util.List;
+
+/**
+ * Best-Fit 放置策略，挂在 {@link joshua.green.placement.PlacementBroker} 上使用
+ * 多因素综合评分：绿色能源、负载均衡（分配数、CPU、VM数）、队列长度，并按历史性能惩罚。
+ *
+ * 每个批次从快照一次性计算所有 DC 的得分分量（绿色库存、CPU、VM数、历史性能），
+ * 之后每个任务只需按基础得分堆做剪枝选择，并更新被选中 DC 的得分，O(log D)。
+ */
+public class BestFitPlacement implements PlacementPolicy {
+
+    // 算法模式
+    public enum Mode {
+        GREEN_PRIORITY,    // 绿色能源优先
+        LOAD_BALANCED,     // 负载均衡优先
+        HYBRID            // 混合模式（默认）
+    }
+
+    private double greenEnergyWeight;
+    private double loadBalanceWeight;
+    private double queueLengthWeight;
+
+    // 批次内的得分分量
+    private double[] baseScore = new double[0];
+    private double[] greenScore, cpuScore, vmScore, performancePenalty;
+    private double avgAssignments;
+
+    public BestFitPlacement() {
+        this(Mode.HYBRID);
+    }
+
+    public BestFitPlacement(Mode mode) {
+        setMode(mode);
+    }
+
+    public void setMode(Mode mode) {
+        double[] w = weightsFor(mode);
+        setWeights(w[0], w[1], w[2]);
+    }
+
+    public void setWeights(double green, double load, double queue) {
+        double sum = green + load + queue;
+        if (sum > 0) {
+            this.greenEnergyWeight = green / sum;
+            this.loadBalanceWeight = load / sum;
+            this.queueLengthWeight = queue / sum;
+        }
+    }
+
+    @Override
+    public int[] place(List<Cloudlet> batch, FleetSnapshot fleet) {
+        int count = fleet.size();
+        if (baseScore.length != count) {
+            baseScore = new double[count];
+            greenScore = new double[count];
+            cpuScore = new double[count];
+            vmScore = new double[count];
+            performancePenalty = new double[count];
+        }
+
+        // 平均分配数在批次开始时取快照
+        avgAssignments = count > 0 ? (double) fleet.getTotalAssigned() / count : 0.0;
+        IndexedMaxHeap heap = new IndexedMaxHeap(count);
+        for (int i = 0; i < count; i++) {
+            greenScore[i] = fleet.isGreenAware(i) ? greenScoreOf(fleet.getGreenStock(i)) : 0.0;
+            cpuScore[i] = cpuScoreOf(fleet.getAvgCpuUtilization(i));
+            vmScore[i] = vmScoreOf(fleet.getVmCount(i), fleet.getHostCount(i));
+            performancePenalty[i] = fleet.getCompleted(i) == 0
+                    ? 1.0 : performancePenaltyOf(fleet.getAvgResponseTime(i));
+            updateScore(i, fleet, heap);
+        }
+
+        int[] choices = new int[batch.size()];
+        for (int c = 0; c < choices.length; c++) {
+            int best = select(batch.get(c), fleet, heap);
+            choices[c] = best;
+            fleet.recordAssignment(best);
+            updateScore(best, fleet, heap);
+        }
+        return choices;
+    }
+
+    /**
+     * 资源因子 <= 1：按基础得分从高到低检查，基础得分低于当前最佳真实得分时停止
+     */
+    private int select(Cloudlet cl, FleetSnapshot fleet, IndexedMaxHeap heap) {
+        int[] best = {-1};
+        double[] bestScore = {Double.NEGATIVE_INFINITY};
+        heap.visitDescending(i -> {
+            if (best[0] >= 0 && baseScore[i] < bestScore[0]) return false;
+            double score = baseScore[i] * resourceScoreOf(fleet.getTotalMips(i), cl.getLength());
+            if (best[0] < 0 || score > bestScore[0]
+                    || (score == bestScore[0] && isLessAssigned(fleet, i, best[0]))) {
+                best[0] = i;
+                bestScore[0] = score;
+            }
+            return true;
+        });
+        return Math.max(0, best[0]);
+    }
+
+    private static boolean isLessAssigned(FleetSnapshot fleet, int a, int b) {
+        int ca = fleet.getAssigned(a);
+        int cb = fleet.getAssigned(b);
+        return ca != cb ? ca < cb : a < b;
+    }
+
+    private void updateScore(int dcIndex, FleetSnapshot fleet, IndexedMaxHeap heap) {
+        double queueScore = 1.0 / (1.0 + fleet.getQueueLength(dcIndex) * 0.05);
+        double loadScore = assignmentBalanceOf(fleet.getAssigned(dcIndex), avgAssignments) * 0.5
+                + cpuScore[dcIndex] * 0.3 + vmScore[dcIndex] * 0.2;
+
+        double score = greenEnergyWeight * greenScore[dcIndex]
+                + loadBalanceWeight * loadScore
+                + queueLengthWeight * queueScore;
+
+        baseScore[dcIndex] = score * performancePenalty[dcIndex];
+        heap.set(dcIndex, baseScore[dcIndex], fleet.getAssigned(dcIndex));
+    }
+
+    /* -------------------- 评分函数 -------------------- */
+
+    /**
+     * 各模式的权重 {绿色, 负载, 队列}
+     */
+    static double[] weightsFor(Mode mode) {
+        switch (mode) {
+            case GREEN_PRIORITY:
+                return new double[]{0.7, 0.2, 0.1};
+            case LOAD_BALANCED:
+                return new double[]{0.2, 0.6, 0.2};
+            case HYBRID:
+            default:
+                return new double[]{0.5, 0.3, 0.2};
+        }
+    }
+
+    /**
+     * 绿色能源得分
+     */
+    static double greenScoreOf(double greenStock) {
+        // 简单归一化：假设最大库存为10000（可根据实际调整）
+        double maxExpectedStock = 10000.0;
+        double normalizedStock = Math.min(greenStock / maxExpectedStock, 1.0);
+
+        // 非线性变换，增强差异
+        return Math.pow(normalizedStock, 0.5);
+    }
+
+    /**
+     * 分配数量均衡得分（平均分配数在批次开始时取快照）
+     */
+    static double assignmentBalanceOf(int currentAssignments, double avgAssignments) {
+        if (avgAssignments > 0) {
+            double deviation = Math.abs(currentAssignments - avgAssignments) / avgAssignments;
+            return Math.exp(-deviation);
+        }
+        return 1.0;
+    }
+
+    /**
+     * CPU利用率得分（目标：60-80%）
+     */
+    static double cpuScoreOf(double avgCpuUtil) {
+        if (avgCpuUtil < 0.6) {
+            return avgCpuUtil / 0.6;
+        } else if (avgCpuUtil <= 0.8) {
+            return 1.0;
+        } else {
+            return Math.max(0.3, 1.0 - (avgCpuUtil - 0.8) * 2);
+        }
+    }
+
+    /**
+     * VM数量得分
+     */
+    static double vmScoreOf(int totalVms, int hostCount) {
+        int maxVmsPerHost = 10; // 假设每个Host最多10个VM
+        int maxVms = hostCount * maxVmsPerHost;
+        return maxVms > 0 ? 1.0 - (double) totalVms / maxVms : 0.5;
+    }
+
+    /**
+     * 资源可用性得分
+     */
+    static double resourceScoreOf(double mips, long requiredMips) {
+        // 检查是否有足够的处理能力
+        if (mips < 0) {
+            return 0.8; // 出错时给予中等得分
+        }
+
+        if (mips < requiredMips) {
+            return 0.1; // 资源严重不足
+        }
+
+        // 资源充足度得分
+        double adequacy = Math.min(mips / (requiredMips * 5), 1.0);
+        return 0.5 + adequacy * 0.5;
+    }
+
+    /**
+     * 性能惩罚因子
+     */
+    static double performancePenaltyOf(double avgResponseTime) {
+        // 根据平均响应时间计算惩罚
+        // 假设理想响应时间为100，超过200则开始惩罚
+        if (avgResponseTime < 100) {
+            return 1.1; // 轻微奖励
+        } else if (avgResponseTime < 200) {
+            return 1.0; // 不惩罚
+        } else {
+            return Math.max(0.5, 1.0 - (avgResponseTime - 200) / 1000);
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.cloudsimplus.vms.VmSimple;
 
 import java.util.*;
 import joshua.green.inferenceConfig;
+import joshua.green.placement.PlacementBroker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,7 +47,7 @@ public class simulation_test {
 
     public void run() {
         CloudSimPlus simulation = new CloudSimPlus(0.001);
-        GlobalBrokerBestFit globalBroker = new GlobalBrokerBestFit(simulation);
+        PlacementBroker globalBroker = new PlacementBroker(simulation, new BestFitPlacement(BestFitPlacement.Mode.HYBRID));
         List<Datacenter> datacenters = new ArrayList<>();
         List<DatacenterBrokerSimple> brokers = new ArrayList<>();
 
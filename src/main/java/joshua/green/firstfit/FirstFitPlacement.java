@@ -0,0 +1,60 @@
+package joshua.green.firstfit;
+
+import joshua.green.HostCapacityIndex;
+import joshua.green.placement.FleetSnapshot;
+import joshua.green.placement.PlacementPolicy;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+
+import java.util.List;
+
+/**
+ * First-Fit 放置策略，挂在 {@link joshua.green.placement.PlacementBroker} 上使用
+ * 按注册顺序选第一个绿色库存 > 0 的 DC（非 GreenAware 的 DC 视为可用）；都不满足则回退 index 0。
+ * 开启 capacityAware 后还要求 DC 内有主机剩余 PE 足够。
+ *
+ * 同一批次内绿色库存不变，只有开启 capacityAware 时才需要逐个任务查询容量索引。
+ */
+public class FirstFitPlacement implements PlacementPolicy {
+
+    private final boolean capacityAware;
+
+    public FirstFitPlacement() {
+        this(false);
+    }
+
+    public FirstFitPlacement(boolean capacityAware) {
+        this.capacityAware = capacityAware;
+    }
+
+    @Override
+    public int[] place(List<Cloudlet> batch, FleetSnapshot fleet) {
+        int[] choices = new int[batch.size()];
+
+        // 批次内共用：按库存可用的候选 DC（保持注册顺序）
+        int[] candidates = new int[fleet.size()];
+        int count = 0;
+        for (int i = 0; i < fleet.size(); i++) {
+            if (!fleet.isGreenAware(i)) {
+                candidates[count++] = i;
+                break; // 非 GreenAware 视为可用，后面的 DC 不会被选到
+            }
+            if (fleet.getGreenStock(i) > 0) candidates[count++] = i;
+        }
+
+        for (int c = 0; c < choices.length; c++) {
+            choices[c] = pick(candidates, count, batch.get(c), fleet);
+        }
+        return choices;
+    }
+
+    private int pick(int[] candidates, int count, Cloudlet cl, FleetSnapshot fleet) {
+        for (int k = 0; k < count; k++) {
+            int i = candidates[k];
+            if (!capacityAware || !fleet.isGreenAware(i)) return i;
+            HostCapacityIndex capacity = fleet.getCapacityIndex(i);
+            if (capacity.isFeasible((int) cl.getPesNumber(), 0, 0)) return i;
+        }
+        return 0;
+    }
+}
@@ -4,6 +4,7 @@ package joshua.green.firstfit;
 import joshua.green.data.TimedCloudlet;
 import joshua.green.data.new_read;
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.placement.PlacementBroker;
 
 import joshua.green.inferenceConfig;
 import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
@@ -50,7 +51,7 @@ public class simulation_test_firstfit {
 
     public void run() {
         CloudSimPlus simulation = new CloudSimPlus(0.001);
-        GlobalBrokerFirstFit globalBroker = new GlobalBrokerFirstFit(simulation);
+        PlacementBroker globalBroker = new PlacementBroker(simulation, new FirstFitPlacement());
         List<Datacenter> datacenters = new ArrayList<>();
         List<DatacenterBrokerSimple> brokers = new ArrayList<>();
 
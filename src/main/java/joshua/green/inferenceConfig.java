@@ -90,6 +90,27 @@ public class inferenceConfig {
     @Parameter(names = {"--initial-scale-factor"}, description = "initial scale factor array")
     private double[] initialScaleFactorArray = {0.015, 0.001, 0.008, 0.002, 0.003, 0.012, 0.005, 0.002, 0.01, 0.006};
 
+    @Parameter(names = {"--deterministic-policy"}, description = "服务器使用确定性（greedy）策略")
+    private boolean deterministicPolicy = false;
+
+    @Parameter(names = {"--decision-cache"}, description = "启用量化状态决策缓存（仅限确定性策略）")
+    private boolean decisionCache = false;
+
+    @Parameter(names = {"--cache-quantum"}, description = "状态量化步长")
+    private double cacheQuantum = 0.01;
+
+    @Parameter(names = {"--cache-size"}, description = "决策缓存容量（LRU）")
+    private int cacheSize = 4096;
+
+    @Parameter(names = {"--cache-ttl"}, description = "缓存条目有效期（仿真秒）")
+    private double cacheTtl = 1.0;
+
+    @Parameter(names = {"--normalizer-file"}, description = "训练时保存的状态归一化统计文件（为空则从默认尺度开始）")
+    private String normalizerFile = "";
+
+    @Parameter(names = {"--freeze-normalizer"}, description = "冻结加载的状态归一化统计（只读取不更新）")
+    private boolean freezeNormalizer = false;
+
     public static SimulationConfig parse(String[] args) {
         SimulationConfig config = new SimulationConfig();
         JCommander commander = JCommander.newBuilder()
@@ -0,0 +1,124 @@
+package joshua.green.newFedRL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Speculative global decisions for cloudlets that have not been released yet.
+ *
+ * TimedCloudlet submission times are known in advance, so while CloudSim is busy with
+ * the current tick the release scheduler asks the policy server for the next arrivals
+ * using the current state snapshot. When a cloudlet actually arrives the prefetched
+ * answer is accepted if its snapshot is at most {@code maxStaleness} simulation seconds
+ * old and the action is still allowed by the current mask; otherwise it is dropped and
+ * the action is re-queried with a fresh state.
+ */
+public class ActionPrefetcher implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ActionPrefetcher.class);
+
+    /** State + server answer used for one decision */
+    public static class Decision {
+        public final double[] state;
+        public final RLClient.ActionResponse response;
+        public final boolean prefetched;
+
+        Decision(double[] state, RLClient.ActionResponse response, boolean prefetched) {
+            this.state = state;
+            this.response = response;
+            this.prefetched = prefetched;
+        }
+    }
+
+    private static class Pending {
+        final double[] state;
+        final double snapshotTime;
+        final CompletableFuture<RLClient.ActionResponse> future;
+
+        Pending(double[] state, double snapshotTime, CompletableFuture<RLClient.ActionResponse> future) {
+            this.state = state;
+            this.snapshotTime = snapshotTime;
+            this.future = future;
+        }
+    }
+
+    private final RLClient rlClient;
+    private final double maxStaleness;
+    private final ExecutorService executor;
+    private final Map<Long, Pending> pending = new HashMap<>();
+
+    private long accepted = 0;
+    private long stale = 0;
+    private long missed = 0;
+
+    public ActionPrefetcher(RLClient rlClient, double maxStaleness, int threads) {
+        this.rlClient = rlClient;
+        this.maxStaleness = maxStaleness;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "action-prefetch");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public boolean isPrefetched(long cloudletId) {
+        return pending.containsKey(cloudletId);
+    }
+
+    /**
+     * Issue an async selectAction for a cloudlet that will arrive later
+     */
+    public void prefetch(long cloudletId, double[] state, boolean[] mask, int actionSpace, double now) {
+        if (pending.containsKey(cloudletId)) return;
+        CompletableFuture<RLClient.ActionResponse> future =
+                CompletableFuture.supplyAsync(() -> rlClient.selectAction(state, actionSpace, mask), executor);
+        pending.put(cloudletId, new Pending(state, now, future));
+    }
+
+    /**
+     * Reconcile on arrival: use the prefetched answer if fresh enough, otherwise query again.
+     * @param freshState built lazily, only when a re-query is needed
+     */
+    public Decision resolve(long cloudletId, Supplier<double[]> freshState, boolean[] mask,
+                            int actionSpace, double now) {
+        Pending p = pending.remove(cloudletId);
+        if (p != null) {
+            if (now - p.snapshotTime <= maxStaleness) {
+                RLClient.ActionResponse res = p.future.join();
+                if (res.action >= 0 && res.action < actionSpace && FallbackPolicy.allowed(mask, res.action)) {
+                    accepted++;
+                    return new Decision(p.state, res, true);
+                }
+            }
+            p.future.cancel(false);
+            stale++;
+        } else {
+            missed++;
+        }
+
+        double[] state = freshState.get();
+        return new Decision(state, rlClient.selectAction(state, actionSpace, mask), false);
+    }
+
+    public String getStats() {
+        long total = accepted + stale + missed;
+        return String.format("Action prefetch: accepted=%d, stale=%d, missed=%d, acceptRate=%.2f%%",
+                accepted, stale, missed, total > 0 ? accepted * 100.0 / total : 0.0);
+    }
+
+    @Override
+    public void close() {
+        for (Pending p : pending.values()) {
+            p.future.cancel(false);
+        }
+        pending.clear();
+        executor.shutdownNow();
+        LOGGER.info(getStats());
+    }
+}
@@ -0,0 +1,145 @@
+package joshua.green.newFedRL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Circuit breaker for the RL transport.
+ *
+ * Opens after {@code failureThreshold} consecutive failures, where a call slower than
+ * {@code slowCallMillis} also counts as a failure. While open, callers are expected to use
+ * their in-JVM fallback policy without touching the network. A background probe runs every
+ * {@code probeIntervalMillis} and closes the breaker as soon as the server answers again.
+ */
+public class CircuitBreaker implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private final String name;
+    private final int failureThreshold;
+    private final long slowCallMillis;
+    private final long probeIntervalMillis;
+    private final BooleanSupplier probe;
+    private final ScheduledExecutorService prober;
+
+    private volatile boolean open = false;
+    private int consecutiveFailures = 0;
+    private long openedAtNanos = 0;
+    private ScheduledFuture<?> probeTask;
+
+    // Metrics
+    private long openCount = 0;
+    private long degradedNanos = 0;
+    private long rejectedCalls = 0;
+
+    public CircuitBreaker(String name, int failureThreshold, long slowCallMillis,
+                          long probeIntervalMillis, BooleanSupplier probe) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.slowCallMillis = slowCallMillis;
+        this.probeIntervalMillis = Math.max(1, probeIntervalMillis);
+        this.probe = probe;
+        this.prober = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "breaker-probe-" + name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @return true if the call may go to the server, false if the breaker is open
+     */
+    public boolean allowRequest() {
+        if (open) {
+            synchronized (this) {
+                rejectedCalls++;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized void recordSuccess(long latencyMillis) {
+        if (latencyMillis > slowCallMillis) {
+            LOGGER.warn("RL transport {}: slow call {} ms (limit {} ms)", name, latencyMillis, slowCallMillis);
+            recordFailure();
+            return;
+        }
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (!open && consecutiveFailures >= failureThreshold) {
+            trip();
+        }
+    }
+
+    private void trip() {
+        open = true;
+        openCount++;
+        openedAtNanos = System.nanoTime();
+        LOGGER.error("RL transport {}: circuit OPEN after {} consecutive failures, using fallback policy",
+                name, consecutiveFailures);
+        probeTask = prober.scheduleWithFixedDelay(this::runProbe,
+                probeIntervalMillis, probeIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void runProbe() {
+        boolean healthy;
+        try {
+            healthy = probe.getAsBoolean();
+        } catch (Exception e) {
+            healthy = false;
+        }
+        if (healthy) {
+            synchronized (this) {
+                if (open) {
+                    long degraded = System.nanoTime() - openedAtNanos;
+                    degradedNanos += degraded;
+                    open = false;
+                    consecutiveFailures = 0;
+                    if (probeTask != null) probeTask.cancel(false);
+                    LOGGER.info("RL transport {}: circuit CLOSED after {} s degraded",
+                            name, String.format("%.1f", degraded / 1e9));
+                }
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    /**
+     * Total wall-clock time spent open (including the current open period)
+     */
+    public synchronized double getDegradedSeconds() {
+        long total = degradedNanos;
+        if (open) total += System.nanoTime() - openedAtNanos;
+        return total / 1e9;
+    }
+
+    public String getStats() {
+        return String.format("Circuit breaker %s: state=%s, opened=%d, rejected=%d, degraded=%.1fs",
+                name, open ? "OPEN" : "CLOSED", getOpenCount(), getRejectedCalls(), getDegradedSeconds());
+    }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+    }
+}
@@ -0,0 +1,194 @@
+package joshua.green.newFedRL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Append-only binary log of completed decisions (one file per agent).
+ *
+ * Each record is a full (state, action, logProb, value, reward, nextState, done) tuple,
+ * written at completion time so brokers can drop their in-memory copy right away.
+ * The same files can be read back with {@link Reader} as an offline dataset.
+ *
+ * Layout:
+ *   header: int MAGIC, short VERSION, UTF agentId
+ *   record: long cloudletId, double time, int action, double logProb, double value,
+ *           double reward, boolean done, int n, double[n] state, int m, double[m] nextState
+ */
+public class DecisionJournal implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecisionJournal.class);
+
+    private static final int MAGIC = 0x444A524E; // "DJRN"
+    private static final short VERSION = 1;
+
+    private final String agentId;
+    private final Path file;
+    private final DataOutputStream out;
+    private long recordCount = 0;
+
+    /**
+     * Open (or append to) the journal file of one agent
+     */
+    public DecisionJournal(Path file, String agentId) throws IOException {
+        this.agentId = agentId;
+        this.file = file;
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 1 << 16));
+        if (fresh) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeUTF(agentId);
+        }
+        LOGGER.info("DecisionJournal for {} writing to {}", agentId, file);
+    }
+
+    /**
+     * Append one completed transition
+     */
+    public synchronized void append(long cloudletId, double time, double[] state, int action,
+                                    double logProb, double value, double reward,
+                                    double[] nextState, boolean done) {
+        try {
+            out.writeLong(cloudletId);
+            out.writeDouble(time);
+            out.writeInt(action);
+            out.writeDouble(logProb);
+            out.writeDouble(value);
+            out.writeDouble(reward);
+            out.writeBoolean(done);
+            writeVector(state);
+            writeVector(nextState);
+            recordCount++;
+        } catch (IOException e) {
+            LOGGER.error("DecisionJournal append failed for {} (cloudlet {}): {}", agentId, cloudletId, e.getMessage());
+        }
+    }
+
+    private void writeVector(double[] v) throws IOException {
+        if (v == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(v.length);
+        for (double d : v) {
+            out.writeDouble(d);
+        }
+    }
+
+    public synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            LOGGER.error("DecisionJournal flush failed for {}: {}", agentId, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+            LOGGER.info("DecisionJournal for {} closed: {} records in {}", agentId, recordCount, file);
+        } catch (IOException e) {
+            LOGGER.error("DecisionJournal close failed for {}: {}", agentId, e.getMessage());
+        }
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * One recorded transition
+     */
+    public static class Transition {
+        public long cloudletId;
+        public double time;
+        public double[] state;
+        public int action;
+        public double logProb;
+        public double value;
+        public double reward;
+        public double[] nextState;
+        public boolean done;
+    }
+
+    /**
+     * Sequential reader over a journal file
+     */
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+        private final String agentId;
+
+        public Reader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            int magic = in.readInt();
+            if (magic != MAGIC) {
+                in.close();
+                throw new IOException("Not a decision journal: " + file);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported decision journal version " + version + " in " + file);
+            }
+            this.agentId = in.readUTF();
+        }
+
+        public String getAgentId() {
+            return agentId;
+        }
+
+        /**
+         * @return next transition, or null at end of file
+         */
+        public Transition next() throws IOException {
+            Transition t = new Transition();
+            try {
+                t.cloudletId = in.readLong();
+            } catch (EOFException eof) {
+                return null;
+            }
+            t.time = in.readDouble();
+            t.action = in.readInt();
+            t.logProb = in.readDouble();
+            t.value = in.readDouble();
+            t.reward = in.readDouble();
+            t.done = in.readBoolean();
+            t.state = readVector();
+            t.nextState = readVector();
+            return t;
+        }
+
+        private double[] readVector() throws IOException {
+            int n = in.readInt();
+            double[] v = new double[n];
+            for (int i = 0; i < n; i++) {
+                v[i] = in.readDouble();
+            }
+            return v;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
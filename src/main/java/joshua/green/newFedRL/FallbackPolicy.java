@@ -0,0 +1,133 @@
+package joshua.green.newFedRL;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-JVM decision policy used when the Python server cannot be reached.
+ * Implementations only look at the state vector, so they cost no extra simulation queries.
+ * Actions whose mask entry is false are never returned (a null mask allows everything).
+ */
+@FunctionalInterface
+public interface FallbackPolicy {
+
+    int selectAction(double[] state, int actionSpace, boolean[] mask);
+
+    default int selectAction(double[] state, int actionSpace) {
+        return selectAction(state, actionSpace, null);
+    }
+
+    /** Whether the mask allows the action */
+    static boolean allowed(boolean[] mask, int action) {
+        return mask == null || action >= mask.length || mask[action];
+    }
+
+    /** Uniform random choice among allowed actions (the old behaviour without a mask) */
+    static FallbackPolicy random() {
+        Random rnd = new Random();
+        return (state, actionSpace, mask) -> {
+            if (mask == null) return rnd.nextInt(actionSpace);
+            int allowedCount = 0;
+            for (int i = 0; i < actionSpace; i++) if (allowed(mask, i)) allowedCount++;
+            if (allowedCount == 0) return rnd.nextInt(actionSpace);
+            int pick = rnd.nextInt(allowedCount);
+            for (int i = 0; i < actionSpace; i++) {
+                if (allowed(mask, i) && pick-- == 0) return i;
+            }
+            return rnd.nextInt(actionSpace);
+        };
+    }
+
+    /** Cycle through all allowed actions */
+    static FallbackPolicy roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return (state, actionSpace, mask) -> {
+            for (int tries = 0; tries < actionSpace; tries++) {
+                int action = Math.floorMod(next.getAndIncrement(), actionSpace);
+                if (allowed(mask, action)) return action;
+            }
+            return Math.floorMod(next.getAndIncrement(), actionSpace);
+        };
+    }
+
+    /**
+     * Best-fit scoring on the flat GlobalBrokerRL state (5 features per DC:
+     * surplus, stock, mips, cpuUtil, queue), with the HYBRID weights of BestFitPlacement.
+     */
+    static FallbackPolicy bestFitGlobal() {
+        return bestFitGlobal(1);
+    }
+
+    /**
+     * Same scoring on the regional GlobalBrokerRL state (5 features per region:
+     * stock, greenRatio, mips, cpuUtil, queue); actions are region indices.
+     */
+    static FallbackPolicy bestFitRegional() {
+        return bestFitGlobal(0);
+    }
+
+    /**
+     * @param stockOffset position of the green stock feature inside a 5-feature slot
+     */
+    private static FallbackPolicy bestFitGlobal(int stockOffset) {
+        return (state, actionSpace, mask) -> {
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < actionSpace && i * 5 + 4 < state.length; i++) {
+                if (!allowed(mask, i)) continue;
+                int o = i * 5;
+                double greenScore = (state[o + stockOffset] + 1.0) / 2.0;   // stock in [-1, 1]
+                double loadScore = 1.0 - state[o + 3];
+                double queueScore = 1.0 - state[o + 4];
+                double score = 0.5 * greenScore + 0.3 * loadScore + 0.2 * queueScore;
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * Best-fit scoring on the LocalBrokerRL state (7 features per host:
+     * mips, cpuUtil, ramAvail, bwAvail, active, vmCount, greenRatio).
+     * Hosts without VMs are only chosen if no host has one.
+     */
+    static FallbackPolicy bestFitLocal() {
+        return (state, actionSpace, mask) -> {
+            int best = 0;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < actionSpace && i * 7 + 6 < state.length; i++) {
+                if (!allowed(mask, i)) continue;
+                int o = i * 7;
+                double score = 0.5 * (1.0 - state[o + 1]) + 0.3 * state[o + 2] + 0.2 * state[o + 3];
+                if (state[o + 5] <= 0.0) score -= 10.0; // no VM on this host
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = i;
+                }
+            }
+            return best;
+        };
+    }
+
+    /**
+     * @param name  "bestfit", "roundrobin" or "random"
+     * @param local true for a LocalBrokerRL client (host actions), false for the global one
+     * @param regional the global client runs on the regional state layout (region actions)
+     */
+    static FallbackPolicy byName(String name, boolean local, boolean regional) {
+        switch (name == null ? "" : name.toLowerCase()) {
+            case "bestfit":
+                if (local) return bestFitLocal();
+                return regional ? bestFitRegional() : bestFitGlobal();
+            case "roundrobin":
+                return roundRobin();
+            case "random":
+                return random();
+            default:
+                throw new IllegalArgumentException("Unknown fallback policy: " + name);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package joshua.green.newFedRL;
 
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.Datacenters.FleetEnergyLedger;
+import joshua.green.LongObjectMap;
 import joshua.green.StateNormalizer;
 
 import lombok.Getter;
@@ -15,7 +17,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.DoubleConsumer;
 
 
@@ -46,17 +47,59 @@ public class GlobalBrokerRL extends CloudSimEntity {
     /* === Pending structure: snapshot at action time === */
     private static class PendingExp {
         double[] state;      // State at action time
-        int action;          // Selected LocalBroker/DC index
+        int action;          // Agent action (candidate slot when pruning, else DC index)
+        int dcIndex;         // Selected LocalBroker/DC index
         double ts;           // Action timestamp (schedule time)
-        // Energy snapshots (system/selected DC)
+        // Window starts: cumulative (green, total) energy of the system and of the selected DC,
+        // read from the monotonic fleet ledger so the reward is a pair of O(1) differences
         double sysGreenStart, sysTotalStart;
         double dcGreenStart, dcTotalStart;
         // PPO specific
         double logProb;
         double value;
+        boolean offPolicy;   // Action did not come from the policy: reward is accounted, transition never uploaded
+        // Set on completion, consumed when the instant is flushed
+        Cloudlet finished;
+        double tf;
+        boolean done;
     }
-    private final Map<Long, PendingExp> pendingMap = new ConcurrentHashMap<>();
-    private final Map<Integer, Double> dcGreenRatioEma = new ConcurrentHashMap<>();
+    // Keyed by cloudlet id; entries are recycled through the pool once their reward is reported
+    private final LongObjectMap<PendingExp> pendingMap = new LongObjectMap<>();
+    private final ArrayDeque<PendingExp> pendingPool = new ArrayDeque<>();
+
+    /* === Completions of the current simulation instant, turned into transitions once it ends === */
+    private final List<PendingExp> completedThisInstant = new ArrayList<>();
+    private long skippedOffPolicy = 0;                          // Fallback transitions kept out of training
+    private static final int FLUSH_COMPLETIONS_EVENT = 97100;   // Custom event tag: end of the completion instant
+    private static final int TASK_AND_GLOBAL_FEATURES = 4;  // cpu, mem, time, global green ratio
+
+    /* === Optional on-disk log of completed transitions (null = disabled) === */
+    private DecisionJournal decisionJournal;
+
+    /* === Action mask (off unless the server speaks the action_mask protocol): saturated DCs are removed before the decision (<= 0 = only DCs without VMs) === */
+    private boolean actionMaskEnabled = false;
+    private double saturationQueuePerVm = 0.0;
+
+    /* === Candidate pruning: state and actions cover the top-k DCs of a cheap prefilter (<= 0 = whole fleet) === */
+    private int candidateCount = 0;
+    private final LongObjectMap<int[]> candidateMap = new LongObjectMap<>();
+
+    /* === Optional regional tier: the agent picks a region, the region picks a DC (<= 0 = flat) === */
+    private int regionSize = 0;
+    private List<int[]> regionGroups;           // Explicit DC groups; null = contiguous blocks of regionSize
+    private List<RegionalBroker> regions;
+    private int[] regionOf = new int[0];        // DC index -> region index
+    private final StateNormalizer regionNormalizer = new StateNormalizer();
+    private final LongObjectMap<int[]> regionChoices = new LongObjectMap<>();   // cloudlet -> {action, dcIndex}
+
+    /* === Normalizer updates of prefetched states, applied once the decision is used: cloudlet -> {global, region} === */
+    private final LongObjectMap<StateNormalizer.Observations[]> peekedObservations = new LongObjectMap<>();
+
+    /* === Optional shared energy ledger: O(1) system-wide and per-DC counters (null = scan DCs) === */
+    private FleetEnergyLedger fleetLedger;
+    private int[] dcLedgerSlots = new int[0];           // DC index -> ledger slot, resolved lazily (UNRESOLVED / -1 = not a member)
+    private static final int UNRESOLVED = -2;
+    private double[] dcGreenRatioEma = new double[0];   // Per DC index, grown on demand
 
     private static final double W1 = 0.6;
     private static final double W2 = 0.2;
@@ -83,6 +126,10 @@ public class GlobalBrokerRL extends CloudSimEntity {
      * Signal that the episode is ending
      */
     public void signalEpisodeEnd() {
+        flushCompletions();
+        if (skippedOffPolicy > 0) {
+            LOGGER.info("GlobalBroker: {} fallback transitions kept out of training", skippedOffPolicy);
+        }
         this.episodeEnding = true;
         LOGGER.info("GlobalBroker: Episode ending signal received");
     }
@@ -128,13 +175,75 @@ public class GlobalBrokerRL extends CloudSimEntity {
     }
 
     public double[] buildState(Cloudlet cl) {
+        // A fresh state observes the arrival itself; updates recorded by an earlier peek are dropped
+        peekedObservations.remove(cl.getId());
+        if (isRegional()) return buildRegionalState(cl);
+        return buildState(cl, isPruning() ? candidatesFor(cl) : null);
+    }
+
+    /**
+     * State for a speculative (prefetched) decision: same features as {@link #buildState(Cloudlet)},
+     * but the normalizer updates are only recorded, so a prefetch that later turns stale and is
+     * rebuilt does not count the arrival twice
+     */
+    public double[] peekState(Cloudlet cl) {
+        normalizer.startRecording();
+        regionNormalizer.startRecording();
+        double[] state;
+        try {
+            state = buildState(cl);
+        } finally {
+            peekedObservations.put(cl.getId(), new StateNormalizer.Observations[]{
+                    normalizer.stopRecording(), regionNormalizer.stopRecording()});
+        }
+        return state;
+    }
+
+    /**
+     * Feed the normalizers with the cloudlet's arrival, for decisions taken on a
+     * {@link #peekState(Cloudlet)} snapshot: the recorded updates are replayed, O(recorded features)
+     * instead of building the state again
+     */
+    public void observeState(Cloudlet cl) {
+        StateNormalizer.Observations[] peeked = peekedObservations.remove(cl.getId());
+        if (peeked == null) {
+            buildState(cl);
+            return;
+        }
+        normalizer.replay(peeked[0]);
+        regionNormalizer.replay(peeked[1]);
+    }
+
+    /**
+     * One slot of 5 summary features per region (green stock, green ratio, mips, utilization,
+     * outstanding cloudlets), then the same task and global features as the flat state
+     */
+    private double[] buildRegionalState(Cloudlet cl) {
         List<Double> state = new ArrayList<>();
+        double now = getSimulation().clock();
+        for (RegionalBroker region : regions()) {
+            state.add(regionNormalizer.normalizeGreenStock(region.getGreenStock()));
+            state.add(region.getGreenRatio());
+            state.add(regionNormalizer.normalizeMips(region.getAverageProcessingAbility()));
+            state.add(regionNormalizer.normalizeCpuUtilization(region.getMeanCpuUtilization(now)));
+            state.add(regionNormalizer.normalizeQueueLength(region.getOutstandingCloudlets()));
+        }
+        return appendTaskAndGlobalFeatures(state, cl);
+    }
 
-        for (int i = 0; i < localBrokers.size(); i++) {
-            LocalBrokerRL broker = localBrokers.get(i);
-            Datacenter dc = broker.getLastSelectedDc();
+    /**
+     * @param candidates DC index per slot (null = every DC in order); slots past its end are padding
+     */
+    private double[] buildState(Cloudlet cl, int[] candidates) {
+        List<Double> state = new ArrayList<>();
+
+        int slots = isPruning() ? candidateCount : localBrokers.size();
+        for (int j = 0; j < slots; j++) {
+            int i = candidates == null ? j : (j < candidates.length ? candidates[j] : -1);
+            Datacenter dc = i >= 0 ? localBrokers.get(i).getLastSelectedDc() : null;
 
             if (dc instanceof DatacenterGreenAware greenDC) {
+                LocalBrokerRL broker = localBrokers.get(i);
                 double surplus = greenDC.getSurplusForCurrentTick();
                 normalizer.updateObservation("dc" + i + "_surplus", surplus);
                 state.add(normalizer.normalizeGreenSurplus(surplus));
@@ -153,7 +262,7 @@ public class GlobalBrokerRL extends CloudSimEntity {
                 int queueLength = calculateQueueLength(broker);
                 state.add(normalizer.normalizeQueueLength(queueLength));
             } else {
-                // Fallback for non-green-aware DCs
+                // Fallback for non-green-aware DCs and padding slots
                 state.add(0.0); // surplus
                 state.add(0.0); // stock
                 state.add(0.0); // mips
@@ -161,15 +270,13 @@ public class GlobalBrokerRL extends CloudSimEntity {
                 state.add(1.0); // queue
             }
         }
+        return appendTaskAndGlobalFeatures(state, cl);
+    }
 
+    private double[] appendTaskAndGlobalFeatures(List<Double> state, Cloudlet cl) {
         // Task features
-        double cpuReq = cl.getLength();
-        normalizer.updateObservation("task_cpu", cpuReq);
-        state.add(normalizer.normalizeCpuRequirement(cpuReq));
-
-        double memReq = getTaskMemoryRequirement(cl);
-        normalizer.updateObservation("task_mem", memReq);
-        state.add(normalizer.normalizeMemRequirement(memReq));
+        state.add(taskCpuFeature(cl));
+        state.add(taskMemFeature(cl));
 
         // Global information
         double currentTime = getSimulation().clock();
@@ -188,6 +295,224 @@ public class GlobalBrokerRL extends CloudSimEntity {
         return state.stream().mapToDouble(Double::doubleValue).toArray();
     }
 
+    private double taskCpuFeature(Cloudlet cl) {
+        double cpuReq = cl.getLength();
+        normalizer.updateObservation("task_cpu", cpuReq);
+        return normalizer.normalizeCpuRequirement(cpuReq);
+    }
+
+    private double taskMemFeature(Cloudlet cl) {
+        double memReq = getTaskMemoryRequirement(cl);
+        normalizer.updateObservation("task_mem", memReq);
+        return normalizer.normalizeMemRequirement(memReq);
+    }
+
+    /**
+     * Feasible DCs for the next decision: the local broker has placed VMs and is not saturated
+     * (see {@link LocalBrokerRL#isSaturated(double)}); null when masking is disabled
+     */
+    public boolean[] buildActionMask() {
+        if (!actionMaskEnabled) return null;
+        boolean[] mask = new boolean[localBrokers.size()];
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] = !localBrokers.get(i).isSaturated(saturationQueuePerVm);
+        }
+        return mask;
+    }
+
+    /**
+     * Feasible candidate slots for the cloudlet's decision; padding slots are always masked.
+     * Without pruning this is {@link #buildActionMask()}.
+     */
+    public boolean[] buildActionMask(Cloudlet cl) {
+        if (isRegional()) return buildRegionMask();
+        if (!isPruning()) return buildActionMask();
+        int[] candidates = candidatesFor(cl);
+        boolean[] mask = new boolean[candidateCount];
+        for (int j = 0; j < candidates.length; j++) {
+            mask[j] = !actionMaskEnabled || !localBrokers.get(candidates[j]).isSaturated(saturationQueuePerVm);
+        }
+        return mask;
+    }
+
+    /* ===================== Candidate pruning ===================== */
+
+    public boolean isPruning() {
+        return candidateCount > 0 && !isRegional();
+    }
+
+    /**
+     * Number of actions the agent chooses among: regions, candidate slots when pruning,
+     * otherwise one per DC
+     */
+    public int getActionSpace() {
+        if (isRegional()) return regions().size();
+        return isPruning() ? candidateCount : localBrokers.size();
+    }
+
+    /**
+     * DC index behind an agent action for this cloudlet, or -1 if the action is out of range
+     */
+    public int resolveDcIndex(Cloudlet cl, int action) {
+        if (isRegional()) return resolveRegionalDcIndex(cl, action);
+        if (!isPruning()) return (action >= 0 && action < localBrokers.size()) ? action : -1;
+        int[] candidates = candidatesFor(cl);
+        return (action >= 0 && action < candidates.length) ? candidates[action] : -1;
+    }
+
+    /**
+     * Candidate set of a pending decision. It is fixed when first requested, so the state,
+     * the mask and the action mapping stay aligned even if the state is rebuilt later.
+     */
+    private int[] candidatesFor(Cloudlet cl) {
+        int[] candidates = candidateMap.get(cl.getId());
+        if (candidates == null) {
+            candidates = selectCandidates();
+            candidateMap.put(cl.getId(), candidates);
+        }
+        return candidates;
+    }
+
+    /**
+     * Top-k DCs by prefilter score, best first; O(D log k), no model call
+     */
+    private int[] selectCandidates() {
+        int n = localBrokers.size();
+        int k = Math.min(candidateCount, n);
+        double[] score = new double[n];
+        // Min-heap of the k best so far: worst on top, ties keep the lower index
+        PriorityQueue<Integer> top = new PriorityQueue<>(k + 1, (a, b) ->
+                score[a] != score[b] ? Double.compare(score[a], score[b]) : Integer.compare(b, a));
+        for (int i = 0; i < n; i++) {
+            score[i] = prefilterScore(i);
+            top.add(i);
+            if (top.size() > k) top.poll();
+        }
+        int[] candidates = new int[top.size()];
+        for (int j = candidates.length - 1; j >= 0; j--) {
+            candidates[j] = top.poll();
+        }
+        return candidates;
+    }
+
+    /* ===================== Regional tier ===================== */
+
+    public boolean isRegional() {
+        return regionGroups != null || regionSize > 0;
+    }
+
+    /**
+     * Group DCs into regions explicitly (e.g. by geography); every DC should be in exactly one group
+     */
+    public void defineRegions(List<int[]> groups) {
+        this.regionGroups = new ArrayList<>(groups);
+        this.regions = null;
+    }
+
+    public void setRegionSize(int regionSize) {
+        this.regionSize = regionSize;
+        this.regions = null;
+    }
+
+    /**
+     * Regions are built on first use, once the DCs are known
+     */
+    public List<RegionalBroker> getRegions() {
+        return Collections.unmodifiableList(regions());
+    }
+
+    private List<RegionalBroker> regions() {
+        if (regions != null && regionOf.length == localBrokers.size()) return regions;
+
+        int n = localBrokers.size();
+        List<int[]> groups = regionGroups;
+        if (groups == null) {
+            groups = new ArrayList<>();
+            int size = Math.max(1, regionSize);
+            for (int start = 0; start < n; start += size) {
+                int[] members = new int[Math.min(size, n - start)];
+                for (int m = 0; m < members.length; m++) members[m] = start + m;
+                groups.add(members);
+            }
+        }
+        if (candidateCount > 0) {
+            LOGGER.warn("Regional tier enabled, candidate pruning (k={}) is ignored", candidateCount);
+        }
+
+        regions = new ArrayList<>();
+        regionOf = new int[n];
+        Arrays.fill(regionOf, -1);
+        for (int[] members : groups) {
+            List<LocalBrokerRL> brokers = new ArrayList<>();
+            List<Datacenter> dcs = new ArrayList<>();
+            for (int i : members) {
+                brokers.add(localBrokers.get(i));
+                dcs.add(getDatacenterByIndex(i));
+                regionOf[i] = regions.size();
+            }
+            regions.add(new RegionalBroker("region" + regions.size(), members, brokers, dcs));
+        }
+        for (int i = 0; i < n; i++) {
+            if (regionOf[i] < 0) LOGGER.error("DC {} is not assigned to any region and will never be selected", i);
+        }
+        LOGGER.info("Regional tier: {} regions over {} DCs", regions.size(), n);
+        return regions;
+    }
+
+    private Datacenter getDatacenterByIndex(int i) {
+        return i < datacenters.size() ? datacenters.get(i) : localBrokers.get(i).getLastSelectedDc();
+    }
+
+    /**
+     * Saturated regions are masked; null when masking is disabled
+     */
+    private boolean[] buildRegionMask() {
+        if (!actionMaskEnabled) return null;
+        double now = getSimulation().clock();
+        List<RegionalBroker> all = regions();
+        boolean[] mask = new boolean[all.size()];
+        for (int r = 0; r < mask.length; r++) {
+            mask[r] = !all.get(r).isSaturated(saturationQueuePerVm, now);
+        }
+        return mask;
+    }
+
+    /**
+     * The region picks its best member by prefilter score, O(region size); the choice is kept
+     * until the cloudlet is submitted so stats and submission see the same DC
+     */
+    private int resolveRegionalDcIndex(Cloudlet cl, int action) {
+        List<RegionalBroker> all = regions();
+        if (action < 0 || action >= all.size()) return -1;
+        int[] choice = regionChoices.get(cl.getId());
+        if (choice != null && choice[0] == action) return choice[1];
+
+        RegionalBroker region = all.get(action);
+        int best = -1;
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (int m = 0; m < region.size(); m++) {
+            int i = region.getDcIndex(m);
+            double score = prefilterScore(i);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        if (best >= 0) regionChoices.put(cl.getId(), new int[]{action, best});
+        return best;
+    }
+
+    /**
+     * Cheap in-JVM ranking: saturated DCs last, then green stock per outstanding cloudlet
+     */
+    private double prefilterScore(int i) {
+        LocalBrokerRL broker = localBrokers.get(i);
+        if (broker.isSaturated(saturationQueuePerVm)) return -1.0;
+        Datacenter dc = broker.getLastSelectedDc();
+        double stock = dc instanceof DatacenterGreenAware g ? Math.max(0.0, g.getCurrentGreenEnergyStock()) : 0.0;
+        return (1.0 + stock) / (1.0 + broker.getOutstandingCloudlets());
+    }
+
     private int calculateQueueLength(LocalBrokerRL broker) {
         int submittedCount = broker.getCloudletSubmittedList().size();
         int finishedCount = broker.getCloudletFinishedList().size();
@@ -205,6 +530,8 @@ public class GlobalBrokerRL extends CloudSimEntity {
     }
 
     private double calculateGlobalGreenRatio() {
+        if (fleetLedger != null) return fleetLedger.getSystemGreenRatio();
+
         double totalGreenUsed = 0;
         double totalEnergyUsed = 0;
 
@@ -241,6 +568,8 @@ public class GlobalBrokerRL extends CloudSimEntity {
 
     /* ===================== System/DC energy snapshot reading ===================== */
     private double getSystemGreenUsed() {
+        if (fleetLedger != null) return fleetLedger.getSystemGreenUsed();
+
         double sum = 0.0;
         if (!datacenters.isEmpty()) {
             for (Datacenter dc : datacenters) {
@@ -256,6 +585,8 @@ public class GlobalBrokerRL extends CloudSimEntity {
     }
 
     private double getSystemTotalUsed() {
+        if (fleetLedger != null) return fleetLedger.getSystemTotalUsed();
+
         double sum = 0.0;
         if (!datacenters.isEmpty()) {
             for (Datacenter dc : datacenters) {
@@ -276,12 +607,18 @@ public class GlobalBrokerRL extends CloudSimEntity {
 
     private double getDcGreenUsedByIndex(int idx) {
         if (idx < 0 || idx >= localBrokers.size()) return 0.0;
+        int slot = ledgerSlotOf(idx);
+        if (slot >= 0) return fleetLedger.getGreenUsed(slot);
+
         Datacenter dc = localBrokers.get(idx).getLastSelectedDc();
         return (dc instanceof DatacenterGreenAware g) ? g.getTotalGreenUsed() : 0.0;
     }
 
     private double getDcTotalUsedByIndex(int idx) {
         if (idx < 0 || idx >= localBrokers.size()) return 0.0;
+        int slot = ledgerSlotOf(idx);
+        if (slot >= 0) return fleetLedger.getTotalUsed(slot);
+
         Datacenter dc = localBrokers.get(idx).getLastSelectedDc();
         if (dc instanceof DatacenterGreenAware g) {
             return g.getTotalGreenUsed() + g.getTotalBrownUsed();
@@ -289,13 +626,37 @@ public class GlobalBrokerRL extends CloudSimEntity {
         return 0.0;
     }
 
+    /**
+     * Ledger slot of the DC behind a LocalBroker index, or -1 (no ledger / DC not a member).
+     * Resolved on first use because DCs join the ledger after it is handed to the broker.
+     */
+    private int ledgerSlotOf(int idx) {
+        if (fleetLedger == null) return -1;
+        if (idx >= dcLedgerSlots.length) {
+            int from = dcLedgerSlots.length;
+            dcLedgerSlots = Arrays.copyOf(dcLedgerSlots, Math.max(idx + 1, localBrokers.size()));
+            Arrays.fill(dcLedgerSlots, from, dcLedgerSlots.length, UNRESOLVED);
+        }
+        if (dcLedgerSlots[idx] == UNRESOLVED) {
+            Datacenter dc = getDatacenterByIndex(idx);
+            if (dc == null || dc == Datacenter.NULL) return -1;   // Not known yet, try again later
+            dcLedgerSlots[idx] = dc instanceof DatacenterGreenAware g ? g.getFleetSlot(fleetLedger) : -1;
+        }
+        return dcLedgerSlots[idx];
+    }
+
+    public void setFleetLedger(FleetEnergyLedger fleetLedger) {
+        this.fleetLedger = fleetLedger;
+        this.dcLedgerSlots = new int[0];
+    }
+
     /* ===================== Submit task (with reward alignment) ===================== */
 
     /**
      * Old signature: maintain compatibility; internally builds state, logProb/value set to 0.
      */
     public void submitCloudlet(Cloudlet cl, int action) {
-        if (action < 0 || action >= localBrokers.size()) {
+        if (action < 0 || action >= getActionSpace()) {
             LOGGER.error("Invalid Local Broker index {} for Cloudlet {}", action, cl.getId());
             return;
         }
@@ -308,7 +669,17 @@ public class GlobalBrokerRL extends CloudSimEntity {
      * calculate reward from [ts->tf] and report with proper done flag.
      */
     public void submitCloudlet(Cloudlet cl, double[] state, int action, double logProb, double value) {
-        if (action < 0 || action >= localBrokers.size()) {
+        submitCloudlet(cl, state, action, logProb, value, false);
+    }
+
+    /**
+     * @param offPolicy the action came from a fallback, not the policy; its transition is not uploaded
+     */
+    public void submitCloudlet(Cloudlet cl, double[] state, int action, double logProb, double value, boolean offPolicy) {
+        int dcIndex = resolveDcIndex(cl, action);
+        candidateMap.remove(cl.getId());
+        regionChoices.remove(cl.getId());
+        if (dcIndex < 0) {
             LOGGER.error("Invalid Local Broker index {} for Cloudlet {}", action, cl.getId());
             return;
         }
@@ -316,22 +687,27 @@ public class GlobalBrokerRL extends CloudSimEntity {
         final double now = getSimulation().clock();
 
         // 1) Record pending
-        PendingExp exp = new PendingExp();
+        PendingExp exp = pendingPool.isEmpty() ? new PendingExp() : pendingPool.pop();
         exp.state = state != null ? state.clone() : null;
         exp.action = action;
+        exp.dcIndex = dcIndex;
         exp.ts = now;
 
+        // Ledger reads extrapolate every DC's open segment to now, so no settle is needed first
         exp.sysGreenStart = getSystemGreenUsed();
         exp.sysTotalStart = getSystemTotalUsed();
-        exp.dcGreenStart  = getDcGreenUsedByIndex(action);
-        exp.dcTotalStart  = getDcTotalUsedByIndex(action);
+        exp.dcGreenStart  = getDcGreenUsedByIndex(dcIndex);
+        exp.dcTotalStart  = getDcTotalUsedByIndex(dcIndex);
 
         exp.logProb = logProb;
         exp.value   = value;
+        exp.offPolicy = offPolicy;
 
         pendingMap.put(cl.getId(), exp);
+        final RegionalBroker region = isRegional() && regionOf[dcIndex] >= 0 ? regions.get(regionOf[dcIndex]) : null;
+        if (region != null) region.dispatched();
 
-        // 2) Register completion callback: calculate reward when done
+        // 2) Register completion callback: the transition is assembled when the instant ends
         cl.addOnFinishListener(info -> {
             Cloudlet finished = info.getCloudlet();
             PendingExp p = pendingMap.remove(finished.getId());
@@ -340,19 +716,54 @@ public class GlobalBrokerRL extends CloudSimEntity {
                 return;
             }
 
+            if (region != null) region.completed();
+
             // Increment completed counter
             completedCloudlets++;
 
             // Check if this is the last cloudlet or episode is ending
-            boolean isDone = (completedCloudlets >= totalCloudlets) || episodeEnding;
-
-            if (isDone) {
+            p.done = (completedCloudlets >= totalCloudlets) || episodeEnding;
+            if (p.done) {
                 LOGGER.info("GlobalBroker: Episode done signal for Cloudlet {} (completed: {}/{})",
                         finished.getId(), completedCloudlets, totalCloudlets);
             }
 
-            final double tf = info.getTime();
-            final double r_global = computeGlobalReward(p, tf, p.action);
+            p.finished = finished;
+            p.tf = info.getTime();
+            // Zero-delay self event: runs at tf, after the events already queued for this instant
+            if (completedThisInstant.isEmpty()) schedule(0, FLUSH_COMPLETIONS_EVENT);
+            completedThisInstant.add(p);
+        });
+
+        // 3) Actually submit the task to the corresponding LocalBroker
+        LocalBrokerRL broker = localBrokers.get(dcIndex);
+        broker.submitCloudlet(cl);
+
+        LOGGER.info("GlobalBrokerRL: Cloudlet {} -> LocalBroker {} (DC {}) at t={}",
+                cl.getId(), broker.getId(), dcIndex, now);
+    }
+
+    /**
+     * Turn the completions queued at the current instant into transitions: the fleet counters
+     * and the next-state fleet block are read once and shared, each completion only patches in
+     * its own task features, and the batch is uploaded in one request.
+     */
+    public void flushCompletions() {
+        if (completedThisInstant.isEmpty()) return;
+
+        // Exact at tf: the ledger extrapolates the open segment of every DC, including ones nothing else settles
+        final double sysGreenEnd = getSystemGreenUsed();
+        final double sysTotalEnd = getSystemTotalUsed();
+
+        // next state: snapshot at completion time (fresh candidates, not recorded)
+        double[] shared = isRegional() ? buildRegionalState(completedThisInstant.get(0).finished)
+                : buildState(completedThisInstant.get(0).finished, isPruning() ? selectCandidates() : null);
+        final int taskOffset = shared.length - TASK_AND_GLOBAL_FEATURES;
+
+        List<DecisionJournal.Transition> batch = new ArrayList<>(completedThisInstant.size());
+        for (int k = 0; k < completedThisInstant.size(); k++) {
+            PendingExp p = completedThisInstant.get(k);
+            final double r_global = computeGlobalReward(p, p.tf, p.dcIndex, sysGreenEnd, sysTotalEnd);
 
             // Internal accumulation + external callback
             episodeRewardSum += r_global;
@@ -361,45 +772,80 @@ public class GlobalBrokerRL extends CloudSimEntity {
             }
 
             LOGGER.debug("GlobalReward: cl={}, r_global={}, episodeSumNow={}, done={}",
-                    finished.getId(),
+                    p.finished.getId(),
                     String.format("%.6f", r_global),
                     String.format("%.6f", episodeRewardSum),
-                    isDone);
-
-            // next state: snapshot at completion time
-            double[] nextState = buildState(finished);
-
-            try {
-                rlClient.storeExperience(
-                        p.state != null ? p.state : new double[]{},
-                        p.action,
-                        r_global,
-                        nextState,
-                        isDone,          // Properly set done flag
-                        p.logProb,
-                        p.value
-                );
-            } catch (Exception e) {
-                LOGGER.error("storeExperience (global) failed for Cloudlet {}: {}", finished.getId(), e.getMessage());
+                    p.done);
+
+            if (p.offPolicy) {
+                skippedOffPolicy++;
+                p.state = null;
+                p.finished = null;
+                pendingPool.push(p);
+                continue;
             }
-        });
 
-        // 3) Actually submit the task to the corresponding LocalBroker
-        LocalBrokerRL broker = localBrokers.get(action);
-        broker.submitCloudlet(cl);
+            double[] nextState = shared;
+            if (k > 0) {
+                nextState = shared.clone();
+                nextState[taskOffset] = taskCpuFeature(p.finished);
+                nextState[taskOffset + 1] = taskMemFeature(p.finished);
+            }
+            // Normally flushed at tf already; keeps the time exact for flushes at episode end / shutdown
+            nextState[taskOffset + 2] = normalizer.normalizeTime(p.tf);
+
+            DecisionJournal.Transition t = new DecisionJournal.Transition();
+            t.cloudletId = p.finished.getId();
+            t.time = p.tf;
+            t.state = p.state != null ? p.state : new double[]{};
+            t.action = p.action;
+            t.logProb = p.logProb;
+            t.value = p.value;
+            t.reward = r_global;
+            t.nextState = nextState;
+            t.done = p.done;
+            batch.add(t);
+
+            if (decisionJournal != null) {
+                decisionJournal.append(t.cloudletId, t.time, p.state, t.action,
+                        t.logProb, t.value, t.reward, t.nextState, t.done);
+            }
 
-        LOGGER.info("GlobalBrokerRL: Cloudlet {} -> LocalBroker {} (DC {}) at t={}",
-                cl.getId(), broker.getId(), action, now);
+            p.state = null;
+            p.finished = null;
+            pendingPool.push(p);
+        }
+        completedThisInstant.clear();
+        if (batch.isEmpty()) return;
+
+        try {
+            if (batch.size() == 1) {
+                DecisionJournal.Transition t = batch.get(0);
+                rlClient.storeExperience(t.state, t.action, t.reward, t.nextState, t.done, t.logProb, t.value);
+            } else {
+                rlClient.storeExperienceBatch(batch);
+            }
+        } catch (Exception e) {
+            LOGGER.error("storeExperience (global) failed for {} transitions: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        flushCompletions();
+        super.shutdown();
     }
 
     public int getStateDimension() {
-        // Each DC has 5 features, plus 2 task features, plus 2 global features
-        return localBrokers.size() * 5 + 2 + 2;
+        // Each DC (or candidate slot, or region) has 5 features, plus 2 task features, plus 2 global features
+        return getActionSpace() * 5 + 2 + 2;
     }
 
     @Override
     public void processEvent(SimEvent simEvent) {
-        // No internal events to process for now
+        if (simEvent.getTag() == FLUSH_COMPLETIONS_EVENT) {
+            flushCompletions();
+        }
     }
 
     /**
@@ -407,16 +853,18 @@ public class GlobalBrokerRL extends CloudSimEntity {
      * @param p  pendingExp containing energy snapshots at action time, state, etc.
      * @param tf Cloudlet completion time
      * @param action action (selected datacenter index)
+     * @param sysGreenEnd system green energy used at the end of the window (read once per instant)
+     * @param sysTotalEnd system total energy used at the end of the window
      * @return global reward for this cloudlet
      */
-    private double computeGlobalReward(PendingExp p, double tf, int action) {
+    private double computeGlobalReward(PendingExp p, double tf, int action, double sysGreenEnd, double sysTotalEnd) {
         // 1) Window duration
         final double duration = Math.max(0.0, tf - p.ts);
         final double timePenalty = Math.min(1.0, duration / TIME_SCALE);
 
         // 2) System window slice
-        double dG_sys = getSystemGreenUsed() - p.sysGreenStart;
-        double dE_sys = getSystemTotalUsed() - p.sysTotalStart;
+        double dG_sys = sysGreenEnd - p.sysGreenStart;
+        double dE_sys = sysTotalEnd - p.sysTotalStart;
         double ratio_sys = (dE_sys > 0) ? (dG_sys / dE_sys) : 0.0;
 
         // 3) Selected DC window slice
@@ -425,9 +873,11 @@ public class GlobalBrokerRL extends CloudSimEntity {
         double ratio_dc = (dE_dc > 0) ? (dG_dc / dE_dc) : 0.0;
 
         // 4) DC EMA baseline
-        double baseline = dcGreenRatioEma.getOrDefault(action, 0.0);
-        double newBaseline = (1.0 - EMA_ALPHA) * baseline + EMA_ALPHA * ratio_dc;
-        dcGreenRatioEma.put(action, newBaseline);
+        if (action >= dcGreenRatioEma.length) {
+            dcGreenRatioEma = Arrays.copyOf(dcGreenRatioEma, Math.max(action + 1, localBrokers.size()));
+        }
+        double baseline = dcGreenRatioEma[action];
+        dcGreenRatioEma[action] = (1.0 - EMA_ALPHA) * baseline + EMA_ALPHA * ratio_dc;
 
         // 5) Final reward combination
         double r = W1 * ratio_sys
@@ -0,0 +1,183 @@
+package joshua.green.newFedRL;
+
+import org.cloudsimplus.hosts.Host;
+import org.cloudsimplus.listeners.VmHostEventInfo;
+import org.cloudsimplus.vms.Vm;
+
+import java.util.*;
+
+/**
+ * Per-host index of a broker's VMs, kept up to date from VM lifecycle events.
+ *
+ * Each host has an ordered set of its VMs: idle VMs first (in creation order), then busy
+ * ones by CPU utilization and outstanding dispatches. A VM's position is refreshed lazily: processing updates only
+ * mark it dirty, and dirty VMs are re-keyed on the next lookup for that host, so
+ * selection costs O(log k) plus the VMs that changed since the last lookup. The head is
+ * re-checked against live state before it is returned, which catches cloudlets that
+ * arrived on a VM without a processing update yet.
+ *
+ * A VM counts as idle when nothing is running on it and no cloudlet dispatched to it
+ * is still unfinished, so a burst of arrivals in the same tick is spread over idle VMs
+ * instead of all landing on the first one.
+ */
+public class HostVmIndex {
+
+    private static final class Entry {
+        final Vm vm;
+        final long seq;        // Creation order, final tie-break
+        Host host;
+        boolean idle = true;
+        double cpuUtil;
+        int inFlight;          // Dispatched, not yet finished
+        boolean dirty;
+        long checkedAt = -1;   // Last lookup that confirmed the key against live state
+
+        Entry(Vm vm, long seq) {
+            this.vm = vm;
+            this.seq = seq;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparing((Entry e) -> !e.idle)
+            .thenComparingDouble(e -> e.cpuUtil)
+            .thenComparingInt(e -> e.inFlight)
+            .thenComparingLong(e -> e.seq);
+
+    private static final class HostBucket {
+        final TreeSet<Entry> ordered = new TreeSet<>(ORDER);
+        final List<Entry> dirty = new ArrayList<>();
+    }
+
+    private final Map<Vm, Entry> entries = new HashMap<>();
+    private final Map<Host, HostBucket> buckets = new HashMap<>();
+    private long nextSeq = 0;
+    private long lookupStamp = 0;
+
+    /**
+     * Start tracking a VM; it enters the index once it is placed on a host
+     */
+    public void track(Vm vm) {
+        vm.addOnHostAllocationListener(this::onHostAllocated);
+        vm.addOnHostDeallocationListener(this::onHostDeallocated);
+        vm.addOnMigrationFinishListener(this::onMigrated);
+        vm.addOnUpdateProcessingListener(info -> markDirty(info.getVm()));
+    }
+
+    /**
+     * Best VM on the host (idle first, then lowest CPU utilization), or null if none.
+     * The returned VM is counted as busy until {@link #release(Vm)} is called.
+     */
+    public Vm select(Host host) {
+        HostBucket bucket = buckets.get(host);
+        if (bucket == null || bucket.ordered.isEmpty()) return null;
+        refresh(bucket);
+
+        // Cloudlets can reach a VM without a processing update in between,
+        // so confirm the head against live state before handing it out
+        Entry best = bucket.ordered.first();
+        long stamp = ++lookupStamp;
+        while (best.checkedAt != stamp) {
+            bucket.ordered.remove(best);
+            rekey(best);
+            best.checkedAt = stamp;
+            bucket.ordered.add(best);
+            best = bucket.ordered.first();
+        }
+        bucket.ordered.remove(best);
+        best.inFlight++;
+        best.idle = false;
+        bucket.ordered.add(best);
+        return best.vm;
+    }
+
+    /**
+     * A cloudlet dispatched through {@link #select(Host)} has finished
+     */
+    public void release(Vm vm) {
+        Entry entry = entries.get(vm);
+        if (entry == null || entry.inFlight == 0) return;
+        HostBucket bucket = buckets.get(entry.host);
+        if (bucket != null) bucket.ordered.remove(entry);
+        entry.inFlight--;
+        if (bucket != null) bucket.ordered.add(entry);
+        markDirty(vm);
+    }
+
+    public int getVmCount(Host host) {
+        HostBucket bucket = buckets.get(host);
+        return bucket == null ? 0 : bucket.ordered.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void onHostAllocated(VmHostEventInfo info) {
+        Vm vm = info.getVm();
+        Entry entry = entries.get(vm);
+        if (entry == null) {
+            entry = new Entry(vm, nextSeq++);
+            entries.put(vm, entry);
+        } else if (entry.host != null) {
+            detach(entry);
+        }
+        attach(entry, vm.getHost());
+    }
+
+    private void onHostDeallocated(VmHostEventInfo info) {
+        Entry entry = entries.remove(info.getVm());
+        if (entry != null) detach(entry);
+    }
+
+    private void onMigrated(VmHostEventInfo info) {
+        Entry entry = entries.get(info.getVm());
+        if (entry == null) return;
+        detach(entry);
+        attach(entry, info.getHost());
+    }
+
+    private void attach(Entry entry, Host host) {
+        entry.host = host;
+        entry.dirty = false;
+        rekey(entry);
+        buckets.computeIfAbsent(host, h -> new HostBucket()).ordered.add(entry);
+    }
+
+    private void detach(Entry entry) {
+        HostBucket bucket = buckets.get(entry.host);
+        if (bucket != null) {
+            bucket.ordered.remove(entry);
+            if (entry.dirty) bucket.dirty.remove(entry);
+        }
+        entry.dirty = false;
+        entry.host = null;
+    }
+
+    private void markDirty(Vm vm) {
+        Entry entry = entries.get(vm);
+        if (entry == null || entry.dirty || entry.host == null) return;
+        HostBucket bucket = buckets.get(entry.host);
+        if (bucket == null) return;
+        entry.dirty = true;
+        bucket.dirty.add(entry);
+    }
+
+    /**
+     * Re-key VMs whose processing state changed since the last lookup
+     */
+    private void refresh(HostBucket bucket) {
+        for (Entry entry : bucket.dirty) {
+            bucket.ordered.remove(entry);
+            rekey(entry);
+            entry.dirty = false;
+            bucket.ordered.add(entry);
+        }
+        bucket.dirty.clear();
+    }
+
+    private static void rekey(Entry entry) {
+        entry.idle = entry.inFlight == 0 && entry.vm.getCloudletScheduler().isEmpty();
+        entry.cpuUtil = entry.vm.getCpuPercentUtilization();
+    }
+}
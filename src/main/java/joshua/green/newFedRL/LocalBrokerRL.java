@@ -1,6 +1,7 @@
 package joshua.green.newFedRL;
 
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.LongObjectMap;
 import joshua.green.StateNormalizer;
 import lombok.Getter;
 import lombok.NonNull;
@@ -8,6 +9,7 @@ import org.cloudsimplus.brokers.DatacenterBroker;
 import org.cloudsimplus.brokers.DatacenterBrokerSimple;
 import org.cloudsimplus.cloudlets.Cloudlet;
 import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.core.events.SimEvent;
 import org.cloudsimplus.datacenters.Datacenter;
 import org.cloudsimplus.hosts.Host;
 import org.cloudsimplus.vms.Vm;
@@ -15,7 +17,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 public class LocalBrokerRL extends DatacenterBrokerSimple {
     private static final Logger LOGGER = LoggerFactory.getLogger(LocalBrokerRL.class);
@@ -23,19 +24,22 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
     private final RLClient rlClient;
     private final List<Host> hosts = new ArrayList<>();
 
-    // State normalizer
-    private final StateNormalizer normalizer = new StateNormalizer();
+    // State normalizer (restored from the previous episode / a checkpoint by the driver)
+    @Getter private final StateNormalizer normalizer = new StateNormalizer();
 
     // Episode tracking for proper done flags
     private int totalCloudlets = 0;
     private int completedCloudlets = 0;
     private boolean episodeEnding = false;
 
-    // (Retained for debugging/compatibility)
-    @Getter private final Map<Long, double[]> stateMap  = new HashMap<>();
-    @Getter private final Map<Long, Integer>  actionMap = new HashMap<>();
-    @Getter private final Map<Long, Double>   probLogMap = new HashMap<>();
-    @Getter private final Map<Long, Double>   valueMap = new HashMap<>();
+    // Host -> VM index for O(log k) VM selection on the chosen host
+    private final HostVmIndex vmIndex = new HostVmIndex();
+
+    // Mask hosts without a usable VM before asking the policy (off unless the server speaks the action_mask protocol)
+    private boolean actionMaskEnabled = false;
+
+    // Optional on-disk log of completed transitions (null = disabled)
+    @Getter private DecisionJournal decisionJournal;
 
     // Pending experiences (linked by cloudletId)
     private static class PendingExp {
@@ -43,14 +47,36 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         int action;
         double logProb;
         double value;
+        boolean offPolicy; // Action did not come from the policy: never uploaded
 
         double ts;         // Action timestamp (schedule)
         long hostId = -1;  // Selected host ID (optional)
         // Energy snapshots (DC granularity mainly; Host granularity can be extended if implemented)
         double dcGreenStart, dcTotalStart;
         int dcIndex = -1;  // Optional: if you need to track by index
+        // Set on completion, consumed when the instant is flushed
+        Cloudlet finished;
+        double tf;
+        boolean done;
+
+        void reset() {
+            state = null;
+            finished = null;
+            hostId = -1;
+            dcGreenStart = 0;
+            dcTotalStart = 0;
+            dcIndex = -1;
+        }
     }
-    private final Map<Long, PendingExp> pendingMap = new ConcurrentHashMap<>();
+    // Keyed by cloudlet id; entries are recycled through the pool once their reward is reported
+    private final LongObjectMap<PendingExp> pendingMap = new LongObjectMap<>();
+    private final ArrayDeque<PendingExp> pendingPool = new ArrayDeque<>();
+
+    // Completions of the current simulation instant, turned into transitions once it ends
+    private final List<PendingExp> completedThisInstant = new ArrayList<>();
+    private long skippedOffPolicy = 0;                          // Fallback transitions kept out of training
+    private static final int FLUSH_COMPLETIONS_EVENT = 97101;   // Custom event tag: end of the completion instant
+    private static final int HOST_FEATURES = 7;
 
     // Local reward coefficients (can be fine-tuned as needed)
     private static final double A1 = 0.40; // Wait time penalty weight
@@ -69,6 +95,17 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         this.hosts.addAll(hosts);
     }
 
+    /**
+     * Attach a journal; completed transitions are written there instead of being kept in memory
+     */
+    public void setDecisionJournal(DecisionJournal journal) {
+        this.decisionJournal = journal;
+    }
+
+    public void setActionMaskEnabled(boolean enabled) {
+        this.actionMaskEnabled = enabled;
+    }
+
     /**
      * Set total cloudlets for episode tracking
      */
@@ -83,6 +120,10 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
      * Signal that the episode is ending
      */
     public void signalEpisodeEnd() {
+        flushCompletions();
+        if (skippedOffPolicy > 0) {
+            LOGGER.info("LocalBroker {}: {} fallback transitions kept out of training", getId(), skippedOffPolicy);
+        }
         this.episodeEnding = true;
         LOGGER.info("LocalBroker {}: Episode ending signal received", getId());
     }
@@ -96,23 +137,33 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         LOGGER.info("LocalBroker {}: Episode tracking reset", getId());
     }
 
+    @Override
+    public DatacenterBroker submitVmList(@NonNull List<? extends Vm> list) {
+        // submitVm and the delayed variant both end up here
+        list.forEach(vmIndex::track);
+        return super.submitVmList(list);
+    }
+
     @Override
     public DatacenterBroker submitCloudlet(@NonNull Cloudlet cloudlet) {
         // 1) Build local state
         double[] state = buildState(cloudlet);
 
-        // 2) Select action (Host index) through RL client
-        RLClient.ActionResponse result = rlClient.selectActionLocal(state, hosts.size());
+        // 2) Select action (Host index) through RL client, hosts without a VM masked out
+        boolean[] mask = actionMaskEnabled ? buildActionMask() : null;
+        RLClient.ActionResponse result = rlClient.selectActionLocal(state, hosts.size(), mask);
         int action   = result.action;
         double logProb = result.log_prob;
         double value   = result.value;
 
         // 3) Validate action and select Host/VM
         Host selectedHost = null;
+        Vm dispatchedVm = null;
         if (action >= 0 && action < hosts.size()) {
             selectedHost = hosts.get(action);
             if (selectedHost != null) {
                 Vm vm = findBestVm(selectedHost);
+                dispatchedVm = vm;
                 if (vm != null) {
                     cloudlet.setVm(vm);
                     LOGGER.debug("Local: Cloudlet {} -> VM {} on Host {}",
@@ -128,11 +179,12 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
 
         // 4) Record pending (for action-reward alignment)
         final double now = getSimulation().clock();
-        LocalBrokerRL.PendingExp exp = new LocalBrokerRL.PendingExp();
-        exp.state = state != null ? state.clone() : null;
+        LocalBrokerRL.PendingExp exp = pendingPool.isEmpty() ? new LocalBrokerRL.PendingExp() : pendingPool.pop();
+        exp.state = state;
         exp.action = action;
         exp.logProb = logProb;
         exp.value = value;
+        exp.offPolicy = result.offPolicy;
         exp.ts = now;
         if (selectedHost != null) exp.hostId = selectedHost.getId();
 
@@ -144,9 +196,11 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         }
         pendingMap.put(cloudlet.getId(), exp);
 
-        // 5) Register completion callback: calculate local reward and report with done flag
+        // 5) Register completion callback: the transition is assembled when the instant ends
+        final Vm reservedVm = dispatchedVm;
         cloudlet.addOnFinishListener(info -> {
             Cloudlet finished = info.getCloudlet();
+            if (reservedVm != null) vmIndex.release(reservedVm);
             LocalBrokerRL.PendingExp p = pendingMap.remove(finished.getId());
             if (p == null) {
                 LOGGER.warn("Local: pending missing for Cloudlet {}", finished.getId());
@@ -157,51 +211,118 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
             completedCloudlets++;
 
             // Check if this is the last cloudlet or episode is ending
-            boolean isDone = (completedCloudlets >= totalCloudlets) || episodeEnding;
-
-            if (isDone) {
+            p.done = (completedCloudlets >= totalCloudlets) || episodeEnding;
+            if (p.done) {
                 LOGGER.info("LocalBroker {}: Episode done signal for Cloudlet {} (completed: {}/{})",
                         getId(), finished.getId(), completedCloudlets, totalCloudlets);
             }
 
-            double tf = info.getTime();
-            double rLocal = computeLocalReward(p, finished, tf);
-
-            // next state: snapshot at completion time
-            double[] nextState = buildState(finished);
-
-            try {
-                rlClient.storeExperienceLocal(
-                        p.state != null ? p.state : new double[]{},
-                        p.action,
-                        rLocal,
-                        nextState,
-                        isDone,      // Properly set done flag
-                        p.logProb,
-                        p.value
-                );
-            } catch (Exception e) {
-                LOGGER.error("storeExperienceLocal failed for Cloudlet {}: {}", finished.getId(), e.getMessage());
-            }
+            p.finished = finished;
+            p.tf = info.getTime();
+            // Zero-delay self event: runs at tf, after the events already queued for this instant
+            if (completedThisInstant.isEmpty()) schedule(0, FLUSH_COMPLETIONS_EVENT);
+            completedThisInstant.add(p);
         });
 
-        // (Retained) Store decision info: for your old statistics code to continue working
-        long cloudletId = cloudlet.getId();
-        stateMap.put(cloudletId, state);
-        actionMap.put(cloudletId, action);
-        probLogMap.put(cloudletId, logProb);
-        valueMap.put(cloudletId, value);
-
         // 6) Submit to parent class (triggers CloudSim scheduling)
         return super.submitCloudlet(cloudlet);
     }
 
+    /**
+     * Turn the completions queued at the current instant into transitions: the DC energy
+     * counters and the host block of the next state are read once, each completion only patches
+     * in its own task features, and the batch is uploaded in one request.
+     */
+    public void flushCompletions() {
+        if (completedThisInstant.isEmpty()) return;
+
+        double dcGreenEnd = 0.0, dcTotalEnd = 0.0;
+        boolean greenDc = false;
+        if (getLastSelectedDc() instanceof DatacenterGreenAware g) {
+            dcGreenEnd = g.getTotalGreenUsed();
+            dcTotalEnd = dcGreenEnd + g.getTotalBrownUsed();
+            greenDc = true;
+        }
+
+        // next state: snapshot at completion time
+        double[] shared = buildState(completedThisInstant.get(0).finished);
+        final int taskOffset = hosts.size() * HOST_FEATURES;
+
+        List<DecisionJournal.Transition> batch = new ArrayList<>(completedThisInstant.size());
+        for (int k = 0; k < completedThisInstant.size(); k++) {
+            LocalBrokerRL.PendingExp p = completedThisInstant.get(k);
+            double rLocal = computeLocalReward(p, p.finished, p.tf, greenDc, dcGreenEnd, dcTotalEnd);
+            if (p.offPolicy) {
+                skippedOffPolicy++;
+                p.reset();
+                pendingPool.push(p);
+                continue;
+            }
+
+            double[] nextState = shared;
+            if (k > 0) {
+                nextState = shared.clone();
+                double[] task = taskFeatures(p.finished);
+                System.arraycopy(task, 0, nextState, taskOffset, task.length);
+            }
+
+            DecisionJournal.Transition t = new DecisionJournal.Transition();
+            t.cloudletId = p.finished.getId();
+            t.time = p.tf;
+            t.state = p.state != null ? p.state : new double[]{};
+            t.action = p.action;
+            t.logProb = p.logProb;
+            t.value = p.value;
+            t.reward = rLocal;
+            t.nextState = nextState;
+            t.done = p.done;
+            batch.add(t);
+
+            if (decisionJournal != null) {
+                decisionJournal.append(t.cloudletId, t.time, p.state, t.action,
+                        t.logProb, t.value, t.reward, t.nextState, t.done);
+            }
+
+            p.reset();
+            pendingPool.push(p);
+        }
+        completedThisInstant.clear();
+        if (batch.isEmpty()) return;
+
+        try {
+            if (batch.size() == 1) {
+                DecisionJournal.Transition t = batch.get(0);
+                rlClient.storeExperienceLocal(t.state, t.action, t.reward, t.nextState, t.done, t.logProb, t.value);
+            } else {
+                rlClient.storeExperienceLocalBatch(batch);
+            }
+        } catch (Exception e) {
+            LOGGER.error("storeExperienceLocal failed for {} transitions: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void processEvent(SimEvent evt) {
+        if (evt.getTag() == FLUSH_COMPLETIONS_EVENT) {
+            flushCompletions();
+            return;
+        }
+        super.processEvent(evt);
+    }
+
+    @Override
+    public void shutdown() {
+        flushCompletions();
+        super.shutdown();
+    }
+
     /**
      * Calculate local reward (calculated on completion, window [ts -> tf])
      * Formula:
      *   r_local = -A1 * norm(T_wait) - A2 * norm(T_exec) - A3 * norm(ΔE_dc) + A4 * norm(ΔG_dc)
      */
-    private double computeLocalReward(LocalBrokerRL.PendingExp p, Cloudlet cl, double tf) {
+    private double computeLocalReward(LocalBrokerRL.PendingExp p, Cloudlet cl, double tf,
+                                      boolean greenDc, double dcGreenEnd, double dcTotalEnd) {
         // 1) Time terms (converted to 0~1 scale)
         double T_wait = Math.max(0.0, cl.getStartWaitTime());
         double T_exec = Math.max(0.0, cl.getTotalExecutionTime());
@@ -210,10 +331,7 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
 
         // 2) DC energy increment (Host granularity unavailable, use DC granularity)
         double dE_dc = 0.0, dG_dc = 0.0;
-        Datacenter dc = getLastSelectedDc();
-        if (dc instanceof DatacenterGreenAware g) {
-            double dcGreenEnd = g.getTotalGreenUsed();
-            double dcTotalEnd = g.getTotalGreenUsed() + g.getTotalBrownUsed();
+        if (greenDc) {
             dG_dc = Math.max(0.0, dcGreenEnd - p.dcGreenStart);
             dE_dc = Math.max(0.0, dcTotalEnd - p.dcTotalStart);
         }
@@ -278,24 +396,9 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         }
 
         // ===== Part 2: Task features =====
-        // 1. CPU requirement (normalized)
-        double cpuReq = cl.getLength();
-        normalizer.updateObservation("cl_cpu_req", cpuReq);
-        state.add(normalizer.normalizeCpuRequirement(cpuReq));
-
-        // 2. Memory requirement (normalized)
-        double memReq = getCloudletMemoryRequirement(cl);
-        normalizer.updateObservation("cl_mem_req", memReq);
-        state.add(normalizer.normalizeMemRequirement(memReq));
-
-        // 3. Bandwidth requirement (normalized)
-        double bwReq = getCloudletBandwidthRequirement(cl);
-        normalizer.updateObservation("cl_bw_req", bwReq);
-        state.add(Math.min(bwReq / 1000.0, 1.0)); // Assume max 1000 Mbps
-
-        // 4. Task priority (if any)
-        double priority = cl.getPriority();
-        state.add(priority / 10.0); // Assume priority 0-10
+        for (double feature : taskFeatures(cl)) {
+            state.add(feature);
+        }
 
         // ===== Part 3: Context information =====
         // 1. Current queue length
@@ -320,6 +423,31 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
         return state.stream().mapToDouble(Double::doubleValue).toArray();
     }
 
+    /**
+     * Task part of the local state (follows the HOST_FEATURES block of every host)
+     */
+    private double[] taskFeatures(Cloudlet cl) {
+        // 1. CPU requirement (normalized)
+        double cpuReq = cl.getLength();
+        normalizer.updateObservation("cl_cpu_req", cpuReq);
+        double cpu = normalizer.normalizeCpuRequirement(cpuReq);
+
+        // 2. Memory requirement (normalized)
+        double memReq = getCloudletMemoryRequirement(cl);
+        normalizer.updateObservation("cl_mem_req", memReq);
+        double mem = normalizer.normalizeMemRequirement(memReq);
+
+        // 3. Bandwidth requirement (normalized)
+        double bwReq = getCloudletBandwidthRequirement(cl);
+        normalizer.updateObservation("cl_bw_req", bwReq);
+        double bw = Math.min(bwReq / 1000.0, 1.0); // Assume max 1000 Mbps
+
+        // 4. Task priority (if any)
+        double priority = cl.getPriority() / 10.0; // Assume priority 0-10
+
+        return new double[]{cpu, mem, bw, priority};
+    }
+
     /**
      * Get task memory requirement
      */
@@ -355,17 +483,43 @@ public class LocalBrokerRL extends DatacenterBrokerSimple {
      * Find best VM on host: prioritize idle, then choose lowest CPU load
      */
     private Vm findBestVm(Host host) {
-        List<Vm> hostVms = new ArrayList<>();
-        for (Vm vm : getVmCreatedList()) {
-            if (vm.getHost().equals(host)) {
-                hostVms.add(vm);
-            }
+        return vmIndex.select(host);
+    }
+
+    /**
+     * Feasible hosts: not failed and running at least one VM of this broker
+     */
+    public boolean[] buildActionMask() {
+        boolean[] mask = new boolean[hosts.size()];
+        for (int i = 0; i < mask.length; i++) {
+            Host host = hosts.get(i);
+            mask[i] = !host.isFailed() && vmIndex.getVmCount(host) > 0;
         }
-        if (hostVms.isEmpty()) return null;
-        for (Vm vm : hostVms) if (vm.isIdle()) return vm;
-        return hostVms.stream()
-                .min(Comparator.comparingDouble(Vm::getCpuPercentUtilization))
-                .orElse(hostVms.get(0));
+        return mask;
+    }
+
+    /**
+     * Cloudlets submitted but not finished, plus those still waiting for a VM
+     */
+    public int getOutstandingCloudlets() {
+        return getCloudletSubmittedList().size() - getCloudletFinishedList().size()
+                + getCloudletWaitingList().size();
+    }
+
+    /**
+     * VMs currently placed on a host of this broker's DC
+     */
+    public int getPlacedVmCount() {
+        return vmIndex.size();
+    }
+
+    /**
+     * No placed VM, or at least maxQueuePerVm outstanding cloudlets per VM (0 = only the VM check)
+     */
+    public boolean isSaturated(double maxQueuePerVm) {
+        int vms = getPlacedVmCount();
+        if (vms == 0) return true;
+        return maxQueuePerVm > 0 && getOutstandingCloudlets() >= maxQueuePerVm * vms;
     }
 
     /**
@@ -0,0 +1,91 @@
+package joshua.green.newFedRL;
+
+import joshua.green.StateNormalizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * State normalizer statistics of all agents of one run (global, region tier, one per local broker).
+ *
+ * Brokers are rebuilt every episode, so without a checkpoint each episode would spend its first
+ * observations per feature on default scales and the policy would see a shifting input
+ * distribution. The driver captures a checkpoint at episode end and applies it to the next
+ * episode's brokers; written to disk it carries training statistics over to inference runs,
+ * where it is typically applied frozen.
+ */
+public class NormalizerCheckpoint implements Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NormalizerCheckpoint.class);
+    private static final long serialVersionUID = 1L;
+
+    private final StateNormalizer.Snapshot global;
+    private final StateNormalizer.Snapshot region;
+    private final StateNormalizer.Snapshot[] locals;    // Indexed like the local brokers / DCs
+
+    private NormalizerCheckpoint(StateNormalizer.Snapshot global, StateNormalizer.Snapshot region,
+                                 StateNormalizer.Snapshot[] locals) {
+        this.global = global;
+        this.region = region;
+        this.locals = locals;
+    }
+
+    public static NormalizerCheckpoint capture(GlobalBrokerRL globalBroker, List<LocalBrokerRL> brokers) {
+        StateNormalizer.Snapshot[] locals = new StateNormalizer.Snapshot[brokers.size()];
+        for (int i = 0; i < locals.length; i++) {
+            locals[i] = brokers.get(i).getNormalizer().snapshot();
+        }
+        return new NormalizerCheckpoint(globalBroker.getNormalizer().snapshot(),
+                globalBroker.getRegionNormalizer().snapshot(), locals);
+    }
+
+    /**
+     * Restore every normalizer; local brokers beyond the checkpointed count keep fresh statistics
+     */
+    public void applyTo(GlobalBrokerRL globalBroker, List<LocalBrokerRL> brokers, boolean frozen) {
+        restore(globalBroker.getNormalizer(), global, frozen);
+        restore(globalBroker.getRegionNormalizer(), region, frozen);
+        if (brokers.size() != locals.length) {
+            LOGGER.warn("Normalizer checkpoint has {} local brokers, run has {}", locals.length, brokers.size());
+        }
+        for (int i = 0; i < brokers.size(); i++) {
+            StateNormalizer normalizer = brokers.get(i).getNormalizer();
+            if (i < locals.length) {
+                restore(normalizer, locals[i], frozen);
+            } else {
+                normalizer.setFrozen(frozen);
+            }
+        }
+    }
+
+    private static void restore(StateNormalizer normalizer, StateNormalizer.Snapshot snapshot, boolean frozen) {
+        normalizer.restore(snapshot);
+        normalizer.setFrozen(frozen);
+    }
+
+    public int getLocalCount() {
+        return locals.length;
+    }
+
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeObject(this);
+        }
+    }
+
+    public static NormalizerCheckpoint load(Path file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return (NormalizerCheckpoint) in.readObject();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Not a normalizer checkpoint: " + file, e);
+        }
+    }
+}
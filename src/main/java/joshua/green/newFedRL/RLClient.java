@@ -1,6 +1,7 @@
 package joshua.green.newFedRL;
 
 import com.google.gson.Gson;
+import joshua.green.DecisionCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -11,18 +12,38 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.function.DoubleSupplier;
 
 public class RLClient {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RLClient.class);
     private static final Gson gson = new Gson();
-    private final Random rnd = new Random();
     private final String agentId;
     private final String baseUrl;
 
+    // 推理模式下的决策缓存（仅限确定性策略，null 表示关闭）
+    private DecisionCache decisionCache;
+    private DoubleSupplier simClock;
+
+    // 熔断与降级：服务器慢或不可用时，直接使用 JVM 内的后备策略
+    private CircuitBreaker circuitBreaker;
+    private FallbackPolicy fallbackPolicy;
+    private final FallbackPolicy randomFallback = FallbackPolicy.random(); // 后备策略无结果或结果不可行时使用
+    private int requestTimeoutMs = 0; // 0 = 系统默认
+    private long fallbackDecisions = 0;
+    private long droppedExperiences = 0;
+    private long maskCorrections = 0; // 服务器返回了被屏蔽动作、在本地改选的次数
+
+    // 服务器是否支持带 action_mask 的决策请求格式；旧服务器只接受状态数组，默认关闭（不屏蔽）
+    private boolean actionMaskProtocol = false;
+
+    // 服务器是否支持批量上传接口（第一次收到404后置为false）
+    private volatile boolean batchSupported = true;
+
     /**
      * 新构造函数，支持自定义服务器地址
      */
@@ -51,11 +72,180 @@ public class RLClient {
         }
     }
 
+    /**
+     * 启用决策缓存：近似相同的状态直接复用上次的动作，不再请求服务器。
+     * 只能用于确定性（greedy）推理，训练或采样策略下不要开启。
+     */
+    public void enableDecisionCache(DecisionCache cache, DoubleSupplier simClock) {
+        this.decisionCache = cache;
+        this.simClock = simClock;
+    }
+
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    /**
+     * 配置决策/上传请求的超时、熔断器和后备策略
+     * @param timeoutMs 连接与读取超时（毫秒），0 表示系统默认
+     * @param breaker   熔断器，null 表示不熔断
+     * @param fallback  后备策略，null 表示随机动作
+     */
+    public void configureResilience(int timeoutMs, CircuitBreaker breaker, FallbackPolicy fallback) {
+        this.requestTimeoutMs = Math.max(0, timeoutMs);
+        this.circuitBreaker = breaker;
+        this.fallbackPolicy = fallback;
+    }
+
+    /**
+     * 开启后决策请求携带 action_mask，并在本地纠正服务器返回的被屏蔽动作；
+     * 关闭时掩码被忽略，请求格式与旧版一致
+     */
+    public void setActionMaskProtocol(boolean enabled) {
+        this.actionMaskProtocol = enabled;
+    }
+
+    public boolean isActionMaskProtocol() {
+        return actionMaskProtocol;
+    }
+
+    public String getAgentId() {
+        return agentId;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public synchronized long getFallbackDecisions() {
+        return fallbackDecisions;
+    }
+
+    public synchronized long getDroppedExperiences() {
+        return droppedExperiences;
+    }
+
+    public synchronized long getMaskCorrections() {
+        return maskCorrections;
+    }
+
+    private void applyTimeouts(HttpURLConnection conn) {
+        if (requestTimeoutMs > 0) {
+            conn.setConnectTimeout(requestTimeoutMs);
+            conn.setReadTimeout(requestTimeoutMs);
+        }
+    }
+
+    private boolean breakerAllows() {
+        return circuitBreaker == null || circuitBreaker.allowRequest();
+    }
+
+    private void recordSuccess(long startNanos) {
+        if (circuitBreaker != null) {
+            circuitBreaker.recordSuccess((System.nanoTime() - startNanos) / 1_000_000);
+        }
+    }
+
+    private void recordFailure() {
+        if (circuitBreaker != null) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    private ActionResponse fallbackAction(double[] state, int actionSpace, boolean[] mask) {
+        ActionResponse fallback = new ActionResponse();
+        int action = -1;
+        if (fallbackPolicy != null && state != null) {
+            action = fallbackPolicy.selectAction(state, actionSpace, mask);
+        }
+        if (action < 0 || action >= actionSpace || !FallbackPolicy.allowed(mask, action)) {
+            action = randomFallback.selectAction(state, actionSpace, mask);
+        }
+        fallback.action = action;
+        fallback.log_prob = 0.0;
+        fallback.value = 0.0;
+        fallback.offPolicy = true;
+        synchronized (this) {
+            fallbackDecisions++;
+        }
+        return fallback;
+    }
+
+    private synchronized void dropExperience() {
+        droppedExperiences++;
+    }
+
+    private synchronized void dropExperiences(int count) {
+        droppedExperiences += count;
+    }
+
+    /**
+     * 只保留真正有约束的掩码：长度不符、全部可行或全部不可行时返回 null（不屏蔽）
+     */
+    static boolean[] effectiveMask(boolean[] mask, int actionSpace) {
+        if (mask == null || mask.length != actionSpace) return null;
+        int allowed = 0;
+        for (boolean m : mask) if (m) allowed++;
+        return (allowed == 0 || allowed == actionSpace) ? null : mask;
+    }
+
+    /**
+     * 服务器返回被屏蔽或越界的动作时，在本地按后备策略改选（结果标记为 offPolicy，不参与训练）
+     */
+    private ActionResponse enforceMask(ActionResponse res, double[] state, int actionSpace, boolean[] mask) {
+        if (res != null && res.action >= 0 && res.action < actionSpace && FallbackPolicy.allowed(mask, res.action)) {
+            return res;
+        }
+        synchronized (this) {
+            maskCorrections++;
+        }
+        return fallbackAction(state, actionSpace, mask);
+    }
+
+    private ActionResponse lookupCache(double[] state, boolean[] mask) {
+        if (decisionCache == null || state == null) return null;
+        DecisionCache.Entry hit = decisionCache.get(state, simClock.getAsDouble());
+        if (hit == null || !FallbackPolicy.allowed(mask, hit.action)) return null;
+        ActionResponse res = new ActionResponse();
+        res.action = hit.action;
+        res.log_prob = hit.logProb;
+        res.value = hit.value;
+        return res;
+    }
+
+    private void storeCache(double[] state, ActionResponse res) {
+        if (decisionCache != null && state != null && res != null) {
+            decisionCache.put(state, res.action, res.log_prob, res.value, simClock.getAsDouble());
+        }
+    }
+
     public ActionResponse selectAction(double[] state, int actionSpace) {
+        return selectAction(state, actionSpace, null);
+    }
+
+    /**
+     * @param mask 可行动作掩码（false = 不可选），null 表示全部可行；仅在开启 action_mask 协议时生效，
+     *             有约束时请求体为 {"state": [...], "action_mask": [...]}，否则仍为状态数组
+     */
+    public ActionResponse selectAction(double[] state, int actionSpace, boolean[] mask) {
+        mask = actionMaskProtocol ? effectiveMask(mask, actionSpace) : null;
+        ActionResponse cached = lookupCache(state, mask);
+        if (cached != null) return cached;
+        if (!breakerAllows()) return fallbackAction(state, actionSpace, mask);
+        long start = System.nanoTime();
         try {
-            String payload = gson.toJson(state);
+            String payload;
+            if (mask != null) {
+                Map<String, Object> body = new HashMap<>();
+                body.put("state", state);
+                body.put("action_mask", mask);
+                payload = gson.toJson(body);
+            } else {
+                payload = gson.toJson(state);
+            }
             URL url = new URL(baseUrl + "/select_action");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            applyTimeouts(conn);
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             conn.setDoOutput(true);
@@ -68,22 +258,36 @@ public class RLClient {
             // 读取并解析 JSON 响应
             try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
                 ActionResponse res = gson.fromJson(br, ActionResponse.class);
-                return res;
+                recordSuccess(start);
+                ActionResponse checked = enforceMask(res, state, actionSpace, mask);
+                if (checked == res) storeCache(state, res); // 本地改选的结果不缓存
+                return checked;
             }
         } catch (Exception e) {
             LOGGER.error("Error in selectAction: {}", e.getMessage());
-            ActionResponse fallback = new ActionResponse();
-            fallback.action = rnd.nextInt(actionSpace);
-            fallback.log_prob = 0.0;
-            fallback.value = 0.0;
-            return fallback;
+            recordFailure();
+            return fallbackAction(state, actionSpace, mask);
         }
     }
 
     public ActionResponse selectActionLocal(double[] state, int actionSpace) {
+        return selectActionLocal(state, actionSpace, null);
+    }
+
+    /**
+     * @param mask 可行主机掩码（false = 不可选），null 表示全部可行；仅在开启 action_mask 协议时生效，
+     *             有约束时作为 action_mask 字段发送
+     */
+    public ActionResponse selectActionLocal(double[] state, int actionSpace, boolean[] mask) {
+        mask = actionMaskProtocol ? effectiveMask(mask, actionSpace) : null;
+        ActionResponse cached = lookupCache(state, mask);
+        if (cached != null) return cached;
+        if (!breakerAllows()) return fallbackAction(state, actionSpace, mask);
+        long start = System.nanoTime();
         try {
             URL url = new URL(baseUrl + "/select_action_local");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            applyTimeouts(conn);
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             conn.setDoOutput(true);
@@ -91,6 +295,9 @@ public class RLClient {
             Map<String, Object> payload = new HashMap<>();
             payload.put("broker_id", agentId);
             payload.put("state", state);
+            if (mask != null) {
+                payload.put("action_mask", mask);
+            }
 
             String jsonPayload = gson.toJson(payload);
 
@@ -100,19 +307,32 @@ public class RLClient {
 
             try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
                 ActionResponse res = gson.fromJson(br, ActionResponse.class);
-                return res;
+                recordSuccess(start);
+                ActionResponse checked = enforceMask(res, state, actionSpace, mask);
+                if (checked == res) storeCache(state, res); // 本地改选的结果不缓存
+                return checked;
             }
         } catch (Exception e) {
             LOGGER.error("Error in selectActionLocal: {}", e.getMessage());
-            ActionResponse fallback = new ActionResponse();
-            fallback.action = rnd.nextInt(actionSpace);
-            fallback.log_prob = 0.0;
-            fallback.value = 0.0;
-            return fallback;
+            recordFailure();
+            return fallbackAction(state, actionSpace, mask);
         }
     }
 
     public void storeExperience(double[] state, int action, double reward, double[] nextState, boolean done, double logProb, double value) {
+        if (!breakerAllows()) {
+            dropExperience();
+            return;
+        }
+        sendExperience(state, action, reward, nextState, done, logProb, value);
+    }
+
+    /**
+     * 逐条上传一条全局经验（调用方已检查熔断器）
+     * @return 是否上传成功
+     */
+    private boolean sendExperience(double[] state, int action, double reward, double[] nextState, boolean done, double logProb, double value) {
+        long start = System.nanoTime();
         try {
             // 使用Map代替ObjectNode
             Map<String, Object> payload = new HashMap<>();
@@ -133,6 +353,7 @@ public class RLClient {
 
             URL url = new URL(baseUrl + "/store_experience");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            applyTimeouts(conn);
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             conn.setDoOutput(true);
@@ -143,15 +364,33 @@ public class RLClient {
 
             conn.getInputStream().close();
             conn.disconnect();
+            recordSuccess(start);
+            return true;
         } catch (Exception e) {
             LOGGER.error("Error in storeExperience (PPO): {}", e.getMessage());
+            recordFailure();
+            return false;
         }
     }
 
     public void storeExperienceLocal(double[] state, int action, double reward, double[] nextState, boolean done, double logProb, double value) {
+        if (!breakerAllows()) {
+            dropExperience();
+            return;
+        }
+        sendExperienceLocal(state, action, reward, nextState, done, logProb, value);
+    }
+
+    /**
+     * 逐条上传一条本地经验（调用方已检查熔断器）
+     * @return 是否上传成功
+     */
+    private boolean sendExperienceLocal(double[] state, int action, double reward, double[] nextState, boolean done, double logProb, double value) {
+        long start = System.nanoTime();
         try {
             URL url = new URL(baseUrl + "/store_experience_local");
             HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            applyTimeouts(conn);
             conn.setRequestMethod("POST");
             conn.setRequestProperty("Content-Type", "application/json");
             conn.setDoOutput(true);
@@ -180,8 +419,128 @@ public class RLClient {
 
             conn.getInputStream().close();
             conn.disconnect();
+            recordSuccess(start);
+            return true;
         } catch (Exception e) {
             LOGGER.error("Error in storeExperienceLocal: {}", e.getMessage());
+            recordFailure();
+            return false;
+        }
+    }
+
+    /**
+     * 批量上传全局经验（离线回放、同一仿真时刻完成的任务）。服务器不支持批量接口时自动退回逐条上传。
+     * 未成功提交的条数计入 droppedExperiences。
+     * @return 成功提交的条数
+     */
+    public int storeExperienceBatch(List<DecisionJournal.Transition> batch) {
+        if (batch.isEmpty()) return 0;
+        if (!breakerAllows()) {
+            dropExperiences(batch.size());
+            return 0;
+        }
+        if (batchSupported) {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("experiences", toExperiencePayloads(batch));
+            int code = postBatch("/store_experience_batch", payload);
+            if (code == 200) return batch.size();
+            if (code != 404) {
+                LOGGER.error("storeExperienceBatch failed with response code {}", code);
+                dropExperiences(batch.size());
+                return 0;
+            }
+            LOGGER.warn("Server has no /store_experience_batch, falling back to single uploads");
+            batchSupported = false;
+        }
+        int stored = 0;
+        for (DecisionJournal.Transition t : batch) {
+            if (!breakerAllows()) break;
+            if (sendExperience(t.state, t.action, t.reward, t.nextState, t.done, t.logProb, t.value)) stored++;
+        }
+        dropExperiences(batch.size() - stored);
+        return stored;
+    }
+
+    /**
+     * 批量上传本地经验（离线回放、同一仿真时刻完成的任务）。服务器不支持批量接口时自动退回逐条上传。
+     * 未成功提交的条数计入 droppedExperiences。
+     * @return 成功提交的条数
+     */
+    public int storeExperienceLocalBatch(List<DecisionJournal.Transition> batch) {
+        if (batch.isEmpty()) return 0;
+        if (!breakerAllows()) {
+            dropExperiences(batch.size());
+            return 0;
+        }
+        if (batchSupported) {
+            String brokerId = agentId;
+            if (agentId.startsWith("local_")) {
+                brokerId = agentId.replace("local_", "");
+            }
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("broker_id", brokerId);
+            payload.put("experiences", toExperiencePayloads(batch));
+            int code = postBatch("/store_experience_local_batch", payload);
+            if (code == 200) return batch.size();
+            if (code != 404) {
+                LOGGER.error("storeExperienceLocalBatch failed with response code {}", code);
+                dropExperiences(batch.size());
+                return 0;
+            }
+            LOGGER.warn("Server has no /store_experience_local_batch, falling back to single uploads");
+            batchSupported = false;
+        }
+        int stored = 0;
+        for (DecisionJournal.Transition t : batch) {
+            if (!breakerAllows()) break;
+            if (sendExperienceLocal(t.state, t.action, t.reward, t.nextState, t.done, t.logProb, t.value)) stored++;
+        }
+        dropExperiences(batch.size() - stored);
+        return stored;
+    }
+
+    private List<Map<String, Object>> toExperiencePayloads(List<DecisionJournal.Transition> batch) {
+        List<Map<String, Object>> experiences = new ArrayList<>(batch.size());
+        for (DecisionJournal.Transition t : batch) {
+            Map<String, Object> e = new HashMap<>();
+            e.put("state", t.state);
+            e.put("action", t.action);
+            e.put("reward", t.reward);
+            e.put("nextState", t.nextState);
+            e.put("done", t.done);
+            e.put("log_prob", t.logProb);
+            e.put("value", t.value);
+            experiences.add(e);
+        }
+        return experiences;
+    }
+
+    private int postBatch(String path, Map<String, Object> payload) {
+        long start = System.nanoTime();
+        try {
+            URL url = new URL(baseUrl + path);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            applyTimeouts(conn);
+            conn.setRequestMethod("POST");
+            conn.setRequestProperty("Content-Type", "application/json");
+            conn.setDoOutput(true);
+
+            try (OutputStream os = conn.getOutputStream()) {
+                os.write(gson.toJson(payload).getBytes(StandardCharsets.UTF_8));
+            }
+
+            int responseCode = conn.getResponseCode();
+            if (responseCode == 200) {
+                conn.getInputStream().close();
+                recordSuccess(start);
+            } else if (responseCode != 404) {
+                recordFailure();
+            }
+            return responseCode;
+        } catch (IOException e) {
+            LOGGER.error("Error in {}: {}", path, e.getMessage());
+            recordFailure();
+            return -1;
         }
     }
 
@@ -327,9 +686,29 @@ public class RLClient {
         }
     }
 
+    /**
+     * 熔断器探测用的健康检查（短超时、不打日志）
+     */
+    public boolean probeHealth(int timeoutMs) {
+        try {
+            URL url = new URL(baseUrl + "/health");
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod("GET");
+            conn.setConnectTimeout(timeoutMs);
+            conn.setReadTimeout(timeoutMs);
+            int responseCode = conn.getResponseCode();
+            conn.disconnect();
+            return responseCode == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     public static class ActionResponse {
         public int action;
         public double log_prob;
         public double value;
+        // 动作不是策略网络给出的（后备策略/本地改选），log_prob/value 无意义，不能用于训练
+        public transient boolean offPolicy;
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package joshua.green.newFedRL;
+
+import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.Datacenters.FleetEnergyLedger;
+
+import org.cloudsimplus.datacenters.Datacenter;
+
+import java.util.List;
+
+/**
+ * Middle tier between {@link GlobalBrokerRL} and a group of {@link LocalBrokerRL}s.
+ *
+ * The global agent chooses a region from per-region summaries, then the region's DC is
+ * picked with the global broker's prefilter ranking. Summaries are maintained incrementally:
+ *  - green stock and green ratio come from a region-level {@link FleetEnergyLedger} that
+ *    member DCs publish to on every settlement, O(1) to read
+ *  - outstanding cloudlets are counted on dispatch and completion, O(1)
+ *  - mean CPU utilization and placed VMs are sampled once per simulation tick and shared
+ *    by all decisions in that tick
+ */
+public class RegionalBroker {
+
+    private final String name;
+    private final int[] dcIndices;              // Global DC/LocalBroker indices of the members
+    private final List<LocalBrokerRL> brokers;  // Members, aligned with dcIndices
+    private final List<Datacenter> datacenters;
+    private final FleetEnergyLedger ledger = new FleetEnergyLedger();
+    private final double avgMips;               // Host capacity is fixed, computed once
+
+    private int outstanding = 0;
+    private double sampledAt = Double.NaN;
+    private double meanCpuUtilization = 0.0;
+    private int placedVms = 0;
+
+    RegionalBroker(String name, int[] dcIndices, List<LocalBrokerRL> brokers, List<Datacenter> datacenters) {
+        this.name = name;
+        this.dcIndices = dcIndices.clone();
+        this.brokers = brokers;
+        this.datacenters = datacenters;
+
+        double mips = 0.0;
+        int greenCount = 0;
+        for (Datacenter dc : datacenters) {
+            if (dc instanceof DatacenterGreenAware g) {
+                g.joinFleetLedger(ledger);
+                mips += g.getAverageProcessingAbility();
+                greenCount++;
+            }
+        }
+        this.avgMips = greenCount > 0 ? mips / greenCount : 0.0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getDcIndices() {
+        return dcIndices.clone();
+    }
+
+    int getDcIndex(int member) {
+        return dcIndices[member];
+    }
+
+    public int size() {
+        return dcIndices.length;
+    }
+
+    /* ===================== Incremental counters ===================== */
+
+    void dispatched() {
+        outstanding++;
+    }
+
+    void completed() {
+        if (outstanding > 0) outstanding--;
+    }
+
+    public int getOutstandingCloudlets() {
+        return outstanding;
+    }
+
+    /* ===================== Summary features ===================== */
+
+    public double getGreenStock() {
+        return ledger.getSystemGreenStock();
+    }
+
+    public double getGreenRatio() {
+        return ledger.getSystemGreenRatio();
+    }
+
+    public double getAverageProcessingAbility() {
+        return avgMips;
+    }
+
+    public double getMeanCpuUtilization(double now) {
+        sample(now);
+        return meanCpuUtilization;
+    }
+
+    /**
+     * No member VM placed, or at least maxQueuePerVm outstanding cloudlets per VM over the whole
+     * region (0 = only the VM check); region-level counterpart of {@link LocalBrokerRL#isSaturated(double)}
+     */
+    public boolean isSaturated(double maxQueuePerVm, double now) {
+        sample(now);
+        if (placedVms == 0) return true;
+        return maxQueuePerVm > 0 && outstanding >= maxQueuePerVm * placedVms;
+    }
+
+    private void sample(double now) {
+        if (now == sampledAt) return;
+        sampledAt = now;
+
+        double util = 0.0;
+        int greenCount = 0;
+        for (Datacenter dc : datacenters) {
+            if (dc instanceof DatacenterGreenAware g) {
+                util += g.getCurrentCpuUtilization();
+                greenCount++;
+            }
+        }
+        meanCpuUtilization = greenCount > 0 ? util / greenCount : 1.0;
+
+        int vms = 0;
+        for (LocalBrokerRL broker : brokers) {
+            vms += broker.getPlacedVmCount();
+        }
+        placedVms = vms;
+    }
+}
@@ -0,0 +1,186 @@
+package joshua.green.newFedRL;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Offline replay: streams recorded {@link DecisionJournal} files to the policy server
+ * without running CloudSim, so the learner can be (pre)trained at its own speed.
+ *
+ * Expected layout (as written by rltest with --journal-dir):
+ *   journalDir/episode_001/global.bin, local_0.bin, ...
+ *   journalDir/episode_002/...
+ * A directory that directly contains *.bin files is replayed as a single episode.
+ *
+ * Each episode is wrapped in startEpisode()/endEpisode(). Inside an episode every journal
+ * file is sent by its own task (up to --senders in parallel), in batches of --batch-size,
+ * so the per-agent order of transitions is preserved.
+ */
+public class TransitionReplayer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransitionReplayer.class);
+
+    public static class Options {
+        @Parameter(names = {"-h", "--help"}, help = true, description = "help info")
+        boolean help = false;
+
+        @Parameter(names = {"--journal-dir"}, description = "decision journal directory", required = true)
+        String journalDir;
+
+        @Parameter(names = {"--python-host"}, description = "Python server host")
+        String pythonHost = "localhost";
+
+        @Parameter(names = {"--python-port"}, description = "Python server port")
+        int pythonPort = 5001;
+
+        @Parameter(names = {"--batch-size"}, description = "transitions per upload")
+        int batchSize = 512;
+
+        @Parameter(names = {"--senders"}, description = "concurrent sender threads")
+        int senders = 4;
+
+        @Parameter(names = {"--epochs"}, description = "number of passes over the journals")
+        int epochs = 1;
+    }
+
+    private final Options options;
+    private final RLClient episodeClient;
+    private final AtomicLong sentTotal = new AtomicLong();
+
+    public TransitionReplayer(Options options) {
+        this.options = options;
+        this.episodeClient = new RLClient("global", options.pythonHost, options.pythonPort);
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        JCommander commander = JCommander.newBuilder().addObject(options).build();
+        commander.setProgramName("TransitionReplayer");
+        commander.parse(args);
+        if (options.help) {
+            commander.usage();
+            return;
+        }
+
+        TransitionReplayer replayer = new TransitionReplayer(options);
+        if (!replayer.episodeClient.checkConnection()) {
+            LOGGER.error("Cannot connect to Python server at {}:{}", options.pythonHost, options.pythonPort);
+            System.exit(1);
+        }
+        replayer.run();
+    }
+
+    public void run() {
+        List<Path> episodes;
+        try {
+            episodes = findEpisodeDirs(Paths.get(options.journalDir));
+        } catch (IOException e) {
+            LOGGER.error("Cannot read journal directory {}: {}", options.journalDir, e.getMessage());
+            return;
+        }
+        if (episodes.isEmpty()) {
+            LOGGER.warn("No journals found under {}", options.journalDir);
+            return;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, options.senders));
+        long start = System.nanoTime();
+        try {
+            for (int epoch = 0; epoch < options.epochs; epoch++) {
+                for (Path episode : episodes) {
+                    replayEpisode(pool, episode);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LOGGER.info("Replay finished: {} transitions from {} episode(s) x {} epoch(s) in {}s ({} transitions/s)",
+                sentTotal.get(), episodes.size(), options.epochs,
+                String.format("%.2f", seconds),
+                String.format("%.0f", seconds > 0 ? sentTotal.get() / seconds : 0.0));
+    }
+
+    private void replayEpisode(ExecutorService pool, Path episodeDir) {
+        List<Path> files;
+        try (Stream<Path> s = Files.list(episodeDir)) {
+            files = s.filter(p -> p.toString().endsWith(".bin")).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            LOGGER.error("Cannot list {}: {}", episodeDir, e.getMessage());
+            return;
+        }
+
+        episodeClient.startEpisode();
+        long before = sentTotal.get();
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Path file : files) {
+            futures.add(pool.submit(() -> replayFile(file)));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                LOGGER.error("Replay task failed: {}", e.getCause().getMessage());
+            }
+        }
+
+        episodeClient.endEpisode();
+        LOGGER.info("Replayed episode {}: {} transitions from {} journal(s)",
+                episodeDir.getFileName(), sentTotal.get() - before, files.size());
+    }
+
+    private void replayFile(Path file) {
+        try (DecisionJournal.Reader reader = new DecisionJournal.Reader(file)) {
+            String agentId = reader.getAgentId();
+            boolean local = agentId.startsWith("local_");
+            RLClient client = new RLClient(agentId, options.pythonHost, options.pythonPort);
+
+            List<DecisionJournal.Transition> batch = new ArrayList<>(options.batchSize);
+            DecisionJournal.Transition t;
+            while ((t = reader.next()) != null) {
+                batch.add(t);
+                if (batch.size() >= options.batchSize) {
+                    send(client, local, batch);
+                    batch.clear();
+                }
+            }
+            send(client, local, batch);
+        } catch (IOException e) {
+            LOGGER.error("Failed to replay {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void send(RLClient client, boolean local, List<DecisionJournal.Transition> batch) {
+        if (batch.isEmpty()) return;
+        int sent = local ? client.storeExperienceLocalBatch(batch) : client.storeExperienceBatch(batch);
+        sentTotal.addAndGet(sent);
+    }
+
+    private static List<Path> findEpisodeDirs(Path root) throws IOException {
+        try (Stream<Path> s = Files.list(root)) {
+            List<Path> entries = s.sorted().collect(Collectors.toList());
+            boolean hasJournals = entries.stream().anyMatch(p -> p.toString().endsWith(".bin"));
+            if (hasJournals) {
+                return List.of(root);
+            }
+            return entries.stream().filter(Files::isDirectory).collect(Collectors.toList());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package joshua.green.newFedRL;
 import joshua.green.data.TimedCloudlet;
 import joshua.green.data.new_read;
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.Datacenters.FleetEnergyLedger;
 
 import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
 import org.cloudsimplus.autoscaling.VerticalVmScalingSimple;
@@ -24,8 +25,13 @@ import org.cloudsimplus.vms.VmSimple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import com.beust.jcommander.JCommander;
+import joshua.green.DecisionCache;
 import joshua.green.inferenceConfig;
 
 /**
@@ -45,6 +51,7 @@ public class infer_test {
 
     public static void main(String[] args) {
         inferenceConfig config = new inferenceConfig();
+        JCommander.newBuilder().addObject(config).build().parse(args);
         config.printConfig();
         infer_test sim = new infer_test(config);
         sim.run();
@@ -56,19 +63,36 @@ public class infer_test {
         GlobalBrokerRL globalBroker = new GlobalBrokerRL(simulation, globalRlClient);
         List<Datacenter> dcs = new ArrayList<>();
         List<LocalBrokerRL> brokers = new ArrayList<>();
+        FleetEnergyLedger fleetLedger = new FleetEnergyLedger();
+        globalBroker.setFleetLedger(fleetLedger);
+
+        boolean useCache = config.isDecisionCache();
+        if (useCache && !config.isDeterministicPolicy()) {
+            logger.warn("Decision cache requires a deterministic policy (--deterministic-policy); cache disabled");
+            useCache = false;
+        }
+        if (useCache) {
+            enableDecisionCache(globalRlClient, simulation);
+        }
 
         for (int i = 0; i < config.getDcNum(); i++) {
             DatacenterGreenAware dc = createDatacenter(simulation, i, config.getInitialEnergyArray()[i], config.getInitialScaleFactorArray()[i]);
             dcs.add(dc);
+            dc.joinFleetLedger(fleetLedger);
             RLClient localRlClient = new RLClient("local_"+i);
             localRlClients.add(localRlClient);
+            if (useCache) {
+                enableDecisionCache(localRlClient, simulation);
+            }
             List<Host> hosts = dc.getHostList();
             var broker = new LocalBrokerRL(simulation, localRlClient, hosts);
             broker.setDatacenterMapper((last, vm)->dc);
             brokers.add(broker);
         }
 
+        globalBroker.setDatacenters(dcs);
         globalBroker.addLocalBrokers(brokers);
+        applyNormalizerCheckpoint(globalBroker, brokers);
         List<Vm> vmList = createVms();
         globalBroker.setVmList(vmList);
 
@@ -81,7 +105,40 @@ public class infer_test {
         scheduleCloudlets(simulation, globalBroker, cloudletList, dcs);
         simulation.start();
         printStats(dcs, brokers);
+        printCacheStats();
+
+    }
+
+    /**
+     * Use the input statistics saved by training so the first decisions see the same scaling
+     */
+    private void applyNormalizerCheckpoint(GlobalBrokerRL globalBroker, List<LocalBrokerRL> brokers) {
+        if (config.getNormalizerFile().isEmpty()) return;
+        Path file = Paths.get(config.getNormalizerFile());
+        try {
+            NormalizerCheckpoint.load(file).applyTo(globalBroker, brokers, config.isFreezeNormalizer());
+            logger.info("Loaded normalizer statistics from {} (frozen: {})", file, config.isFreezeNormalizer());
+        } catch (IOException e) {
+            logger.error("Failed to load normalizer statistics from {}, starting from default scales", file, e);
+        }
+    }
+
+    private void enableDecisionCache(RLClient client, CloudSimPlus simulation) {
+        client.enableDecisionCache(
+                new DecisionCache(config.getCacheQuantum(), config.getCacheSize(), config.getCacheTtl()),
+                simulation::clock);
+    }
 
+    private void printCacheStats() {
+        if (globalRlClient.getDecisionCache() != null) {
+            System.out.println("Global " + globalRlClient.getDecisionCache().getStats());
+        }
+        for (int i = 0; i < localRlClients.size(); i++) {
+            DecisionCache cache = localRlClients.get(i).getDecisionCache();
+            if (cache != null) {
+                System.out.println("Local " + i + " " + cache.getStats());
+            }
+        }
     }
 
     private void scheduleCloudlets(CloudSimPlus sim, GlobalBrokerRL globalBroker, List<TimedCloudlet> cloudlets, List<Datacenter> dcs) {
@@ -93,7 +150,8 @@ public class infer_test {
                 if (!submitted.contains(tc) && tc.getSubmissionTime() <= now) {
                     Cloudlet cl = tc.getCloudlet();
                     double[] globalState = globalBroker.buildState(cl);
-                    RLClient.ActionResponse globalAction = globalRlClient.selectAction(globalState, globalBroker.getLocalBrokers().size());
+                    RLClient.ActionResponse globalAction = globalRlClient.selectAction(globalState,
+                            globalBroker.getActionSpace(), globalBroker.buildActionMask(cl));
                     int action = globalAction.action;
                     globalBroker.submitCloudlet(tc.getCloudlet(), action);
                     submitted.add(tc);
@@ -1,6 +1,7 @@
 package joshua.green.newFedRL;
 
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.Datacenters.FleetEnergyLedger;
 import joshua.green.SimulationConfig;
 import joshua.green.RewardNormalizer;
 
@@ -31,6 +32,8 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -50,20 +53,25 @@ public class rltest {
     private final Map<Integer, List<Double>> dcSelectionHistory = new HashMap<>();
 
     // Track cloudlet distribution per broker
-    private final Map<Integer, Integer> cloudletsPerBroker = new HashMap<>();
+    private final int[] cloudletsPerBroker;
+
+    // Normalizer statistics carried from one episode to the next (null = none yet)
+    private NormalizerCheckpoint normalizerCheckpoint;
 
     public rltest(SimulationConfig config) {
         this.config = config;
         this.globalRlClient = new RLClient("global", config.getPythonHost(), config.getPythonPort());
+        this.cloudletsPerBroker = new int[config.getDcNum()];
 
         for (int i = 0; i < config.getDcNum(); i++) {
             localRewardNormalizers.put(i, new RewardNormalizer());
             dcSelectionHistory.put(i, new ArrayList<>());
-            cloudletsPerBroker.put(i, 0);
         }
 
         new File(config.getOutputDir()).mkdirs();
         new File(config.getLogDir()).mkdirs();
+
+        this.normalizerCheckpoint = loadNormalizerCheckpoint();
     }
 
     public static void main(String[] args) {
@@ -124,13 +132,20 @@ public class rltest {
 
         List<LocalBrokerRL> brokers = new ArrayList<>();
         List<Datacenter> dcs = new ArrayList<>();
+        List<CircuitBreaker> breakers = new ArrayList<>();
+        FleetEnergyLedger fleetLedger = new FleetEnergyLedger();
+        globalBroker.setFleetLedger(fleetLedger);
+        // Masks change the request format, so they need a server that speaks the action_mask protocol
+        globalBroker.setActionMaskEnabled(config.isMaskProtocol());
+        globalBroker.setSaturationQueuePerVm(config.getMaskQueuePerVm());
+        globalBroker.setCandidateCount(config.getCandidateK());
+        globalBroker.setRegionSize(config.getRegionSize());
 
         localRlClients.clear();
+        addCircuitBreaker(globalRlClient, false, globalBroker.isRegional(), breakers);
 
         // Reset cloudlet distribution tracking
-        for (int i = 0; i < config.getDcNum(); i++) {
-            cloudletsPerBroker.put(i, 0);
-        }
+        Arrays.fill(cloudletsPerBroker, 0);
 
         // Create datacenters and brokers
         for (int i = 0; i < config.getDcNum(); i++) {
@@ -139,13 +154,16 @@ public class rltest {
                     config.getInitialScaleFactorArray()[i]);
 
             dcs.add(dc);
+            dc.joinFleetLedger(fleetLedger);
             RLClient localRlClient = new RLClient("local_" + i, config.getPythonHost(), config.getPythonPort());
             localRlClients.add(localRlClient);
+            addCircuitBreaker(localRlClient, true, false, breakers);
 
             List<Host> hosts = dc.getHostList();
             LocalBrokerRL broker = new LocalBrokerRL(simulation, localRlClient, hosts);
             broker.setVmDestructionDelayFunction(vm -> 5000.0);
             broker.setDatacenterMapper((last, vm) -> dc);
+            broker.setActionMaskEnabled(config.isMaskProtocol());
 
             // Reset episode tracking for local broker
             broker.resetEpisodeTracking();
@@ -162,6 +180,11 @@ public class rltest {
         globalBroker.setDatacenters(dcs);
         globalBroker.addLocalBrokers(brokers);
 
+        // Continue from the previous episode's input statistics instead of default scales
+        if (normalizerCheckpoint != null) {
+            normalizerCheckpoint.applyTo(globalBroker, brokers, config.isFreezeNormalizer());
+        }
+
         List<Vm> vmList = createVms();
         globalBroker.setVmList(vmList);
 
@@ -181,18 +204,38 @@ public class rltest {
         Cloudlet dummy = new CloudletSimple(1, 1, new UtilizationModelDynamic(0.01));
         dummy.setFileSize(1).setOutputSize(1).setId(0);
         double[] dummyState = globalBroker.buildState(dummy);
+        int dummyDc = globalBroker.resolveDcIndex(dummy, 0);
         globalBroker.submitCloudlet(dummy, dummyState, 0, 0.0, 0.0);
 
-        // Track dummy cloudlet for broker 0
-        cloudletsPerBroker.put(0, cloudletsPerBroker.get(0) + 1);
+        // Track dummy cloudlet for the broker behind action 0
+        cloudletsPerBroker[dummyDc]++;
+
+        // Optional pipelined decisions for upcoming arrivals
+        ActionPrefetcher prefetcher = config.isPrefetch()
+                ? new ActionPrefetcher(globalRlClient, config.getPrefetchMaxStaleness(), config.getPrefetchDepth())
+                : null;
 
         // Schedule cloudlets with proper tracking
         scheduleCloudletsWithTracking(simulation, globalBroker, cloudletList, dcs, brokers,
-                globalRewardSum, totalCloudletsCount);
+                globalRewardSum, totalCloudletsCount, prefetcher);
+
+        // Optional decision journals (one file per agent, one directory per episode)
+        List<DecisionJournal> journals = openDecisionJournals(episode, globalBroker, brokers);
 
         // Start simulation
         simulation.start();
 
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+        for (DecisionJournal journal : journals) {
+            journal.close();
+        }
+        for (CircuitBreaker breaker : breakers) {
+            logger.info(breaker.getStats());
+            breaker.close();
+        }
+
         // ============= Signal episode end after simulation completes =============
         logger.info("Simulation completed for episode {}, signaling episode end to all brokers",
                 episode + 1);
@@ -200,16 +243,16 @@ public class rltest {
         for (LocalBrokerRL broker : brokers) {
             broker.signalEpisodeEnd();
         }
+        normalizerCheckpoint = NormalizerCheckpoint.capture(globalBroker, brokers);
+        saveNormalizerCheckpoint();
 
         // Store DC selection history after simulation completes
         for (int i = 0; i < config.getDcNum(); i++) {
-            if (cloudletsPerBroker.containsKey(i)) {
-                dcSelectionHistory.get(i).add((double) cloudletsPerBroker.get(i));
-            }
+            dcSelectionHistory.get(i).add((double) cloudletsPerBroker[i]);
         }
 
         // Collect episode statistics
-        EpisodeStats stats = collectEpisodeStats(dcs, brokers);
+        EpisodeStats stats = collectEpisodeStats(fleetLedger, brokers);
 
         // Save episode results
         saveEpisodeResults(episode, stats, globalRewardSum[0]);
@@ -239,16 +282,13 @@ public class rltest {
     private void scheduleCloudletsWithTracking(CloudSimPlus sim, GlobalBrokerRL globalBroker,
                                                List<TimedCloudlet> cloudlets, List<Datacenter> dcs,
                                                List<LocalBrokerRL> brokers, double[] globalRewardSum,
-                                               int totalCloudletsCount) {
+                                               int totalCloudletsCount, ActionPrefetcher prefetcher) {
 
         Set<TimedCloudlet> submitted = new HashSet<>();
         Set<Long> finishedCloudletIds = new HashSet<>();
 
         // DC selection stats
-        Map<Integer, Integer> dcSelectionCount = new HashMap<>();
-        for (int i = 0; i < dcs.size(); i++) {
-            dcSelectionCount.put(i, 0);
-        }
+        int[] dcSelectionCount = new int[dcs.size()];
 
         // Track when all cloudlets are submitted and finished
         final boolean[] allSubmitted = {false};
@@ -262,27 +302,54 @@ public class rltest {
             logger.debug("LocalBroker {} expects approximately {} cloudlets", i, estimatedPerBroker);
         }
 
+        // Release order (by submission time), used to look ahead for pre-fetching
+        List<TimedCloudlet> releaseOrder = new ArrayList<>(cloudlets);
+        releaseOrder.sort(Comparator.comparingDouble(TimedCloudlet::getSubmissionTime));
+        final int[] nextRelease = {0};
+
         sim.addOnClockTickListener(evt -> {
             double now = sim.clock();
+            int actionSpace = globalBroker.getActionSpace();
 
             // Submit cloudlets whose time has come
-            List<TimedCloudlet> toSubmit = cloudlets.stream()
-                    .filter(tc -> !submitted.contains(tc) && tc.getSubmissionTime() <= now)
-                    .toList();
+            List<TimedCloudlet> toSubmit = new ArrayList<>();
+            while (nextRelease[0] < releaseOrder.size()
+                    && releaseOrder.get(nextRelease[0]).getSubmissionTime() <= now) {
+                TimedCloudlet tc = releaseOrder.get(nextRelease[0]++);
+                if (!submitted.contains(tc)) {
+                    toSubmit.add(tc);
+                }
+            }
 
             for (TimedCloudlet tc : toSubmit) {
                 Cloudlet cl = tc.getCloudlet();
 
-                // Global action selection
-                double[] globalState = globalBroker.buildState(cl);
-                RLClient.ActionResponse result = globalRlClient.selectAction(
-                        globalState, globalBroker.getLocalBrokers().size());
+                // Global action selection (reuses a pre-fetched decision when still fresh)
+                double[] globalState;
+                RLClient.ActionResponse result;
+                boolean[] mask = globalBroker.buildActionMask(cl);
+                if (prefetcher != null) {
+                    ActionPrefetcher.Decision decision = prefetcher.resolve(
+                            cl.getId(), () -> globalBroker.buildState(cl), mask, actionSpace, now);
+                    globalState = decision.state;
+                    result = decision.response;
+                    if (decision.prefetched) {
+                        // Prefetch states are built read-only; observe the arrival once, at submit
+                        globalBroker.observeState(cl);
+                    }
+                } else {
+                    globalState = globalBroker.buildState(cl);
+                    result = globalRlClient.selectAction(globalState, actionSpace, mask);
+                }
 
-                // Track DC selection
-                dcSelectionCount.put(result.action, dcSelectionCount.get(result.action) + 1);
+                // Track DC selection (actions are candidate slots when pruning)
+                int dcIndex = globalBroker.resolveDcIndex(cl, result.action);
+                if (dcIndex >= 0) {
+                    dcSelectionCount[dcIndex]++;
 
-                // Track cloudlets per broker for accurate counting
-                cloudletsPerBroker.put(result.action, cloudletsPerBroker.get(result.action) + 1);
+                    // Track cloudlets per broker for accurate counting
+                    cloudletsPerBroker[dcIndex]++;
+                }
 
                 // Submit with full information for PPO
                 globalBroker.submitCloudlet(
@@ -290,7 +357,8 @@ public class rltest {
                         globalState,
                         result.action,
                         result.log_prob,
-                        result.value
+                        result.value,
+                        result.offPolicy
                 );
                 submitted.add(tc);
 
@@ -300,6 +368,19 @@ public class rltest {
                 }
             }
 
+            // Pipeline: request decisions for the next arrivals against the current snapshot,
+            // so the HTTP round-trips overlap with CloudSim processing the following events
+            if (prefetcher != null) {
+                int end = Math.min(releaseOrder.size(), nextRelease[0] + config.getPrefetchDepth());
+                for (int i = nextRelease[0]; i < end; i++) {
+                    Cloudlet next = releaseOrder.get(i).getCloudlet();
+                    if (!prefetcher.isPrefetched(next.getId())) {
+                        prefetcher.prefetch(next.getId(), globalBroker.peekState(next),
+                                globalBroker.buildActionMask(next), actionSpace, now);
+                    }
+                }
+            }
+
             // Check if all cloudlets have been submitted
             if (!allSubmitted[0] && submitted.size() >= cloudlets.size()) {
                 allSubmitted[0] = true;
@@ -307,7 +388,7 @@ public class rltest {
 
                 // Update local broker expected counts based on actual distribution
                 for (int i = 0; i < brokers.size(); i++) {
-                    int actualCount = cloudletsPerBroker.get(i);
+                    int actualCount = cloudletsPerBroker[i];
                     brokers.get(i).setTotalCloudlets(actualCount);
                     logger.debug("LocalBroker {} updated to expect {} cloudlets", i, actualCount);
                 }
@@ -356,6 +437,48 @@ public class rltest {
         });
     }
 
+    /**
+     * Timeouts, circuit breaker and in-JVM fallback policy for one RL client
+     * @param regional the global broker uses the regional state layout (region actions)
+     */
+    private void addCircuitBreaker(RLClient client, boolean local, boolean regional, List<CircuitBreaker> breakers) {
+        FallbackPolicy fallback = FallbackPolicy.byName(config.getFallbackPolicy(), local, regional);
+        CircuitBreaker breaker = null;
+        if (config.getBreakerFailures() > 0) {
+            int probeTimeout = config.getRlTimeoutMs() > 0 ? config.getRlTimeoutMs() : 1000;
+            breaker = new CircuitBreaker(client.getAgentId(), config.getBreakerFailures(),
+                    config.getBreakerSlowMs(), config.getBreakerOpenMs(),
+                    () -> client.probeHealth(probeTimeout));
+            breakers.add(breaker);
+        }
+        client.configureResilience(config.getRlTimeoutMs(), breaker, fallback);
+        client.setActionMaskProtocol(config.isMaskProtocol());
+    }
+
+    private List<DecisionJournal> openDecisionJournals(int episode, GlobalBrokerRL globalBroker,
+                                                       List<LocalBrokerRL> brokers) {
+        List<DecisionJournal> journals = new ArrayList<>();
+        if (config.getJournalDir() == null || config.getJournalDir().isEmpty()) {
+            return journals;
+        }
+
+        Path dir = Paths.get(config.getJournalDir(), String.format("episode_%03d", episode + 1));
+        try {
+            DecisionJournal globalJournal = new DecisionJournal(dir.resolve("global.bin"), "global");
+            globalBroker.setDecisionJournal(globalJournal);
+            journals.add(globalJournal);
+
+            for (int i = 0; i < brokers.size(); i++) {
+                DecisionJournal localJournal = new DecisionJournal(dir.resolve("local_" + i + ".bin"), "local_" + i);
+                brokers.get(i).setDecisionJournal(localJournal);
+                journals.add(localJournal);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to open decision journals in {}: {}", dir, e.getMessage());
+        }
+        return journals;
+    }
+
     // Create VMs
     private List<Vm> createVms() {
         List<Vm> list = new ArrayList<>();
@@ -436,18 +559,16 @@ public class rltest {
         double makespan = 0;
     }
 
-    private EpisodeStats collectEpisodeStats(List<Datacenter> dcs, List<LocalBrokerRL> brokers) {
+    private EpisodeStats collectEpisodeStats(FleetEnergyLedger fleetLedger, List<LocalBrokerRL> brokers) {
         EpisodeStats stats = new EpisodeStats();
 
-        for (Datacenter dc : dcs) {
-            if (dc instanceof DatacenterGreenAware greenDc) {
-                stats.totalGreenInitial += greenDc.getInitalGreenEnergy();
-                stats.totalGreenUsed += greenDc.getTotalGreenUsed();
-                stats.totalEnergyUsed += greenDc.getTotalGreenUsed() + greenDc.getTotalBrownUsed();
-                stats.totalGreenGeneration += greenDc.getTotalGenerate();
-                stats.totalSurplus += greenDc.getCumulativeSurplus();
-            }
-        }
+        // Bring every DC up to the final clock once, then read the fleet totals
+        fleetLedger.settleAll();
+        stats.totalGreenInitial = fleetLedger.getSystemInitialGreen();
+        stats.totalGreenUsed = fleetLedger.getSystemGreenUsed();
+        stats.totalEnergyUsed = fleetLedger.getSystemTotalUsed();
+        stats.totalGreenGeneration = fleetLedger.getSystemGenerated();
+        stats.totalSurplus = fleetLedger.getSystemSurplus();
 
         stats.totalGreenResource = stats.totalGreenInitial + stats.totalGreenGeneration;
         stats.greenEnergyRatio = stats.totalEnergyUsed > 0 ?
@@ -484,7 +605,10 @@ public class rltest {
             results.put("totalReward", totalReward);
             results.put("stats", stats);
             results.put("dcSelectionHistory", dcSelectionHistory);
-            results.put("cloudletsPerBroker", cloudletsPerBroker);
+            // Same JSON shape as before: {"dcIndex": count}
+            Map<Integer, Integer> perBroker = new LinkedHashMap<>();
+            for (int i = 0; i < cloudletsPerBroker.length; i++) perBroker.put(i, cloudletsPerBroker[i]);
+            results.put("cloudletsPerBroker", perBroker);
             results.put("timestamp", new Date().toString());
             results.put("config", Map.of(
                     "dcNum", config.getDcNum(),
@@ -504,6 +628,29 @@ public class rltest {
         }
     }
 
+    private NormalizerCheckpoint loadNormalizerCheckpoint() {
+        if (config.getNormalizerFile().isEmpty()) return null;
+        Path file = Paths.get(config.getNormalizerFile());
+        if (!file.toFile().exists()) return null;
+        try {
+            NormalizerCheckpoint checkpoint = NormalizerCheckpoint.load(file);
+            logger.info("Loaded normalizer statistics for {} local brokers from {}", checkpoint.getLocalCount(), file);
+            return checkpoint;
+        } catch (IOException e) {
+            logger.error("Failed to load normalizer statistics from {}, starting from default scales", file, e);
+            return null;
+        }
+    }
+
+    private void saveNormalizerCheckpoint() {
+        if (config.getNormalizerFile().isEmpty()) return;
+        try {
+            normalizerCheckpoint.save(Paths.get(config.getNormalizerFile()));
+        } catch (IOException e) {
+            logger.error("Failed to save normalizer statistics to {}", config.getNormalizerFile(), e);
+        }
+    }
+
     private void saveSimulationSummary(double totalTimeMinutes) {
         String filename = config.getOutputDir() + "/simulation_summary.txt";
 
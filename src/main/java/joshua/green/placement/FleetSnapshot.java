@@ -0,0 +1,161 @@
+package joshua.green.placement;
+
+import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.HostCapacityIndex;
+
+import org.cloudsimplus.brokers.DatacenterBroker;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.cloudsimplus.hosts.Host;
+
+import java.util.List;
+
+/**
+ * Per-datacenter state shared by all placement decisions of one batch.
+ *
+ * Values are kept in flat arrays indexed by datacenter and refreshed in place once per
+ * batch, O(D·H). Assignment and queue counters are provisional: policies bump them via
+ * {@link #recordAssignment(int)} while placing a batch, and the next capture resets them
+ * from the broker's real tallies.
+ */
+public class FleetSnapshot {
+
+    private final List<? extends Datacenter> datacenters;
+    private final List<? extends DatacenterBroker> brokers;
+
+    private final boolean[] greenAware;
+    private final double[] greenStock;
+    private final double[] avgCpuUtilization;
+    private final int[] hostCount;
+    private final int[] vmCount;
+    private final double[] totalMips;         // Host list is fixed, computed once
+    private final int[] queueLength;
+    private final int[] assigned;
+    private final int[] completed;
+    private final double[] avgResponseTime;
+
+    private long totalAssigned;
+    private double time = Double.NaN;
+
+    FleetSnapshot(List<? extends Datacenter> datacenters, List<? extends DatacenterBroker> brokers) {
+        this.datacenters = datacenters;
+        this.brokers = brokers;
+        int n = datacenters.size();
+        greenAware = new boolean[n];
+        greenStock = new double[n];
+        avgCpuUtilization = new double[n];
+        hostCount = new int[n];
+        vmCount = new int[n];
+        totalMips = new double[n];
+        queueLength = new int[n];
+        assigned = new int[n];
+        completed = new int[n];
+        avgResponseTime = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            Datacenter dc = datacenters.get(i);
+            greenAware[i] = dc instanceof DatacenterGreenAware;
+            totalMips[i] = dc.getHostList().stream().mapToDouble(Host::getMips).sum();
+        }
+    }
+
+    /**
+     * Refresh every datacenter from live state
+     */
+    void capture(double now, int[] assignedCounts, int[] completedCounts, double[] responseTimeSums) {
+        time = now;
+        totalAssigned = 0;
+        for (int i = 0; i < datacenters.size(); i++) {
+            Datacenter dc = datacenters.get(i);
+            greenStock[i] = greenAware[i] ? ((DatacenterGreenAware) dc).getCurrentGreenEnergyStock() : 0.0;
+
+            List<Host> hosts = dc.getHostList();
+            double cpuSum = 0.0;
+            int vms = 0;
+            for (Host host : hosts) {
+                cpuSum += host.getCpuPercentUtilization();
+                vms += host.getVmList().size();
+            }
+            hostCount[i] = hosts.size();
+            vmCount[i] = vms;
+            avgCpuUtilization[i] = hosts.isEmpty() ? 0.5 : cpuSum / hosts.size();
+
+            queueLength[i] = brokers.get(i).getCloudletWaitingList().size();
+            assigned[i] = assignedCounts[i];
+            totalAssigned += assignedCounts[i];
+            completed[i] = completedCounts[i];
+            avgResponseTime[i] = completedCounts[i] > 0 ? responseTimeSums[i] / completedCounts[i] : 0.0;
+        }
+    }
+
+    /**
+     * Count a provisional placement so later decisions in the same batch see it
+     */
+    public void recordAssignment(int dcIndex) {
+        assigned[dcIndex]++;
+        queueLength[dcIndex]++;
+        totalAssigned++;
+    }
+
+    public int size() {
+        return datacenters.size();
+    }
+
+    public double getTime() {
+        return time;
+    }
+
+    public Datacenter getDatacenter(int dcIndex) {
+        return datacenters.get(dcIndex);
+    }
+
+    public boolean isGreenAware(int dcIndex) {
+        return greenAware[dcIndex];
+    }
+
+    /**
+     * Host capacity index of a green-aware datacenter, or null for other datacenters
+     */
+    public HostCapacityIndex getCapacityIndex(int dcIndex) {
+        return greenAware[dcIndex] ? ((DatacenterGreenAware) datacenters.get(dcIndex)).getHostCapacityIndex() : null;
+    }
+
+    public double getGreenStock(int dcIndex) {
+        return greenStock[dcIndex];
+    }
+
+    public double getAvgCpuUtilization(int dcIndex) {
+        return avgCpuUtilization[dcIndex];
+    }
+
+    public int getHostCount(int dcIndex) {
+        return hostCount[dcIndex];
+    }
+
+    public int getVmCount(int dcIndex) {
+        return vmCount[dcIndex];
+    }
+
+    public double getTotalMips(int dcIndex) {
+        return totalMips[dcIndex];
+    }
+
+    public int getQueueLength(int dcIndex) {
+        return queueLength[dcIndex];
+    }
+
+    public int getAssigned(int dcIndex) {
+        return assigned[dcIndex];
+    }
+
+    public long getTotalAssigned() {
+        return totalAssigned;
+    }
+
+    public int getCompleted(int dcIndex) {
+        return completed[dcIndex];
+    }
+
+    public double getAvgResponseTime(int dcIndex) {
+        return avgResponseTime[dcIndex];
+    }
+}
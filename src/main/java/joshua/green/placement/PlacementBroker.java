@@ -0,0 +1,213 @@
+package joshua.green.placement;
+
+import joshua.green.data.TimedCloudlet;
+
+import org.cloudsimplus.brokers.DatacenterBrokerSimple;
+import org.cloudsimplus.cloudlets.Cloudlet;
+import org.cloudsimplus.core.CloudSimEntity;
+import org.cloudsimplus.core.CloudSimPlus;
+import org.cloudsimplus.core.events.SimEvent;
+import org.cloudsimplus.datacenters.Datacenter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+ * Global broker that delegates datacenter selection to a {@link PlacementPolicy}.
+ *
+ * Release of due cloudlets, submission to the local brokers, completion tracking and
+ * termination are handled here once, so swapping the placement strategy is a matter of
+ * passing another policy. Each tick the due cloudlets form one batch, the fleet is
+ * captured once for it, and the policy places the whole batch; chosen cloudlets are
+ * then submitted to each local broker as a single list.
+ *
+ * The heuristic baselines run on it with RandomPlacement, FirstFitPlacement or BestFitPlacement.
+ * Accepts two inputs:
+ *  - setTimedCloudlets: released when their submission time is reached (preferred)
+ *  - setCloudletList: no timestamps, one cloudlet per tick (legacy behaviour)
+ */
+public class PlacementBroker extends CloudSimEntity {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlacementBroker.class);
+
+    private final List<DatacenterBrokerSimple> localBrokers = new ArrayList<>();
+    private final List<Datacenter> datacenters = new ArrayList<>();
+    private PlacementPolicy policy;
+
+    private final Queue<Cloudlet> cloudletQueue = new LinkedList<>();
+    private final List<TimedCloudlet> timedCloudlets = new ArrayList<>();
+    private int nextTimedIndex = 0;
+
+    private final Set<Long> submittedIds = new HashSet<>();
+    private int[] assignedCounts = new int[0];
+    private int[] completedCounts = new int[0];
+    private double[] responseTimeSums = new double[0];
+    private long totalCompleted = 0;
+    private FleetSnapshot snapshot;
+
+    private boolean terminateWhenAllDone = true;
+    private int maxSubmitPerTick = Integer.MAX_VALUE;
+
+    public PlacementBroker(CloudSimPlus simulation, PlacementPolicy policy) {
+        super(simulation);
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /* -------------------- Configuration -------------------- */
+
+    public void addLocalBrokerWithDatacenter(DatacenterBrokerSimple broker, Datacenter dc) {
+        localBrokers.add(broker);
+        datacenters.add(dc);
+        assignedCounts = Arrays.copyOf(assignedCounts, datacenters.size());
+        completedCounts = Arrays.copyOf(completedCounts, datacenters.size());
+        responseTimeSums = Arrays.copyOf(responseTimeSums, datacenters.size());
+        snapshot = null;
+    }
+
+    public void setCloudletList(List<Cloudlet> list) {
+        cloudletQueue.clear();
+        cloudletQueue.addAll(list);
+        LOGGER.info("Queued {} cloudlets (no timestamp)", list.size());
+    }
+
+    public void setTimedCloudlets(List<TimedCloudlet> list) {
+        timedCloudlets.clear();
+        timedCloudlets.addAll(list);
+        timedCloudlets.sort(Comparator.comparingDouble(TimedCloudlet::getSubmissionTime));
+        nextTimedIndex = 0;
+        LOGGER.info("Queued {} timed cloudlets (with submissionTime)", timedCloudlets.size());
+    }
+
+    public void setPolicy(PlacementPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    public PlacementPolicy getPolicy() {
+        return policy;
+    }
+
+    public void setTerminateWhenAllDone(boolean b) { this.terminateWhenAllDone = b; }
+    public void setMaxSubmitPerTick(int n) { this.maxSubmitPerTick = Math.max(1, n); }
+
+    /* -------------------- Tick: release, place, submit -------------------- */
+
+    @Override
+    protected void startInternal() {
+        LOGGER.info("{} starting with policy {}", getName(), policy.getName());
+        getSimulation().addOnClockTickListener(evt -> {
+            final double now = getSimulation().clock();
+            List<Cloudlet> batch = releaseDue(now);
+            if (!batch.isEmpty()) placeBatch(batch, now);
+            checkTermination(now);
+        });
+    }
+
+    private List<Cloudlet> releaseDue(double now) {
+        List<Cloudlet> batch = new ArrayList<>();
+        while (nextTimedIndex < timedCloudlets.size()
+                && timedCloudlets.get(nextTimedIndex).getSubmissionTime() <= now
+                && batch.size() < maxSubmitPerTick) {
+            Cloudlet cl = timedCloudlets.get(nextTimedIndex++).getCloudlet();
+            if (!submittedIds.contains(cl.getId())) batch.add(cl);
+        }
+
+        if (timedCloudlets.isEmpty() && !cloudletQueue.isEmpty()) {
+            Cloudlet cl = cloudletQueue.poll();
+            if (cl != null && !submittedIds.contains(cl.getId())) batch.add(cl);
+        }
+        return batch;
+    }
+
+    private void placeBatch(List<Cloudlet> batch, double now) {
+        if (datacenters.isEmpty()) {
+            LOGGER.error("No datacenters/local brokers bound. Cannot place {} cloudlets", batch.size());
+            return;
+        }
+        if (snapshot == null) snapshot = new FleetSnapshot(datacenters, localBrokers);
+        snapshot.capture(now, assignedCounts, completedCounts, responseTimeSums);
+
+        int[] choices;
+        try {
+            choices = policy.place(Collections.unmodifiableList(batch), snapshot);
+        } catch (Exception e) {
+            LOGGER.error("Policy {} failed at t={}: {}", policy.getName(), String.format("%.2f", now), e.getMessage());
+            choices = null;
+        }
+        if (choices == null || choices.length != batch.size()) {
+            LOGGER.error("Policy {} returned no valid placement for {} cloudlets, using DC 0",
+                    policy.getName(), batch.size());
+            choices = new int[batch.size()];
+        }
+
+        List<List<Cloudlet>> perDc = new ArrayList<>(datacenters.size());
+        for (int i = 0; i < datacenters.size(); i++) perDc.add(new ArrayList<>());
+        for (int i = 0; i < batch.size(); i++) {
+            Cloudlet cl = batch.get(i);
+            int dc = choices[i];
+            if (dc < 0 || dc >= datacenters.size()) {
+                LOGGER.error("Policy {} chose invalid DC {} for cloudlet {}, using DC 0",
+                        policy.getName(), dc, cl.getId());
+                dc = 0;
+            }
+            perDc.get(dc).add(cl);
+        }
+
+        for (int dc = 0; dc < perDc.size(); dc++) {
+            List<Cloudlet> list = perDc.get(dc);
+            if (list.isEmpty()) continue;
+            for (Cloudlet cl : list) {
+                final int dcIndex = dc;
+                cl.addOnFinishListener(info -> onCloudletFinished(dcIndex, info.getCloudlet()));
+                submittedIds.add(cl.getId());
+            }
+            assignedCounts[dc] += list.size();
+            localBrokers.get(dc).submitCloudletList(list);
+        }
+
+        LOGGER.info("t={}: placed {} cloudlets with {}", String.format("%.2f", now), batch.size(), policy.getName());
+    }
+
+    private void onCloudletFinished(int dcIndex, Cloudlet cl) {
+        completedCounts[dcIndex]++;
+        // Execution time as the response-time proxy for BestFitPlacement's penalty
+        responseTimeSums[dcIndex] += cl.getTotalExecutionTime();
+        totalCompleted++;
+        policy.onCompleted(dcIndex, cl);
+    }
+
+    private void checkTermination(double now) {
+        if (!terminateWhenAllDone || submittedIds.isEmpty()) return;
+
+        boolean allSubmitted = timedCloudlets.isEmpty()
+                ? cloudletQueue.isEmpty()
+                : (nextTimedIndex >= timedCloudlets.size());
+        if (allSubmitted && totalCompleted >= submittedIds.size()) {
+            LOGGER.info("All {} cloudlets submitted and finished. Terminating simulation at t={}",
+                    totalCompleted, String.format("%.2f", now));
+            getSimulation().terminate();
+        }
+    }
+
+    @Override
+    public void processEvent(SimEvent simEvent) {
+        // Not used
+    }
+
+    /* -------------------- Getters for monitoring -------------------- */
+
+    public int[] getAssignmentCounts() {
+        return assignedCounts.clone();
+    }
+
+    public long getTotalSubmitted() {
+        return submittedIds.size();
+    }
+
+    public long getTotalCompleted() {
+        return totalCompleted;
+    }
+
+    public List<DatacenterBrokerSimple> getLocalBrokers() {
+        return localBrokers;
+    }
+}
@@ -0,0 +1,36 @@
+package joshua.green.placement;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+
+import java.util.List;
+
+/**
+ * Datacenter placement strategy plugged into a {@link PlacementBroker}.
+ *
+ * The broker releases all cloudlets that are due in a tick as one batch and captures the
+ * fleet state once for it, so a policy can compute its per-datacenter terms a single time
+ * and reuse them for every arrival in the batch. Queuing, submission and completion
+ * tracking stay in the broker.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Choose a datacenter for every cloudlet of the batch.
+     *
+     * @param batch cloudlets released in this tick, in submission-time order
+     * @param fleet fleet state captured once for this batch; policies whose later choices
+     *              depend on earlier ones should call {@link FleetSnapshot#recordAssignment(int)}
+     * @return datacenter index per cloudlet, aligned with {@code batch}
+     */
+    int[] place(List<Cloudlet> batch, FleetSnapshot fleet);
+
+    /**
+     * A cloudlet placed by this policy has finished on the given datacenter
+     */
+    default void onCompleted(int dcIndex, Cloudlet cloudlet) {
+    }
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -1,5 +1,6 @@
 package joshua.green.ppo;
 
+import joshua.green.DecisionCache;
 import joshua.green.Datacenters.DatacenterGreenAware;
 import joshua.green.data.TimedCloudlet;
 import joshua.green.data.read;
@@ -37,6 +38,11 @@ public class PPOInferenceTest {
     private static final long HOST_RAM = 1024 * 1024 * 16, HOST_BW = 10_000, HOST_STORAGE = 1_000_000;
     private static final int VMS = 40, VM_PES = 2, CLOUDLETS = 1000;
 
+    // Decision cache: only valid when the server serves a deterministic (greedy) policy
+    private static final boolean DECISION_CACHE = false;
+    private static final double CACHE_QUANTUM = 0.01, CACHE_TTL = 1.0;
+    private static final int CACHE_SIZE = 4096;
+
     private final RLClient globalRlClient = new RLClient("global");
     private final List<RLClient> localRlClients = new ArrayList<>();
 
@@ -47,6 +53,9 @@ public class PPOInferenceTest {
     public void run(){
         CloudSimPlus simulation = new CloudSimPlus(0.001);
         GlobalBrokerRL globalBroker = new GlobalBrokerRL(simulation, globalRlClient);
+        if (DECISION_CACHE) {
+            globalRlClient.enableDecisionCache(new DecisionCache(CACHE_QUANTUM, CACHE_SIZE, CACHE_TTL), simulation::clock);
+        }
         List<Datacenter> dcs = new ArrayList<>();
         List<LocalBrokerRL> brokers = new ArrayList<>();
 
@@ -78,6 +87,9 @@ public class PPOInferenceTest {
         scheduleCloudlets(simulation, globalBroker, cloudletList, dcs);
         simulation.start();
         printStats(dcs, brokers);
+        if (globalRlClient.getDecisionCache() != null) {
+            System.out.println(globalRlClient.getDecisionCache().getStats());
+        }
     }
 
     private void scheduleCloudlets(CloudSimPlus sim, GlobalBrokerRL globalBroker, List<TimedCloudlet> cloudlets, List<Datacenter> dcs) {
@@ -3,6 +3,7 @@ package joshua.green.ppo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.gson.Gson;
+import joshua.green.DecisionCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -15,6 +16,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Random;
+import java.util.function.DoubleSupplier;
 
 
 public class RLClient {
@@ -25,10 +27,27 @@ public class RLClient {
     private final Random rnd = new Random();
     private final String agentId;
 
+    // 推理模式下的决策缓存（仅限确定性策略，null 表示关闭）
+    private DecisionCache decisionCache;
+    private DoubleSupplier simClock;
+
     public RLClient(String agentId) {
         this.agentId = agentId;
     }
 
+    /**
+     * 启用决策缓存：近似相同的状态直接复用上次的动作，不再请求服务器。
+     * 只能用于确定性（greedy）推理，训练或采样策略下不要开启。
+     */
+    public void enableDecisionCache(DecisionCache cache, DoubleSupplier simClock) {
+        this.decisionCache = cache;
+        this.simClock = simClock;
+    }
+
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
     public void triggerTrain() {
         try {
             URL url = new URL(BASE_URL + "/trigger_train");
@@ -42,6 +61,16 @@ public class RLClient {
     }
 
     public ActionResponse selectAction(double[] state, int actionSpace) {
+        if (decisionCache != null) {
+            DecisionCache.Entry hit = decisionCache.get(state, simClock.getAsDouble());
+            if (hit != null) {
+                ActionResponse res = new ActionResponse();
+                res.action = hit.action;
+                res.log_prob = hit.logProb;
+                res.value = hit.value;
+                return res;
+            }
+        }
         try {
             String payload = gson.toJson(state);
             URL url = new URL(BASE_URL + "/select_action");
@@ -62,6 +91,9 @@ public class RLClient {
                 int action = res.action;
                 double logProb = res.log_prob;
                 double value = res.value;
+                if (decisionCache != null) {
+                    decisionCache.put(state, action, logProb, value, simClock.getAsDouble());
+                }
                 return res;
             }
         } catch (Exception e) {
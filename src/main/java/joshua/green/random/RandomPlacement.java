@@ -0,0 +1,39 @@
+package joshua.green.random;
+
+import joshua.green.placement.FleetSnapshot;
+import joshua.green.placement.PlacementPolicy;
+
+import org.cloudsimplus.cloudlets.Cloudlet;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Placement policy picking a datacenter uniformly at random,
+ * used with {@link joshua.green.placement.PlacementBroker}.
+ */
+public class RandomPlacement implements PlacementPolicy {
+
+    private final Random random;
+
+    public RandomPlacement() {
+        this(new Random());
+    }
+
+    public RandomPlacement(long seed) {
+        this(new Random(seed));
+    }
+
+    public RandomPlacement(Random random) {
+        this.random = random;
+    }
+
+    @Override
+    public int[] place(List<Cloudlet> batch, FleetSnapshot fleet) {
+        int[] choices = new int[batch.size()];
+        for (int i = 0; i < choices.length; i++) {
+            choices[i] = random.nextInt(fleet.size());
+        }
+        return choices;
+    }
+}
@@ -2,6 +2,7 @@ package joshua.green.random;
 import joshua.green.data.TimedCloudlet;
 import joshua.green.data.new_read;
 import joshua.green.Datacenters.DatacenterGreenAware;
+import joshua.green.placement.PlacementBroker;
 
 import joshua.green.inferenceConfig;
 import org.cloudsimplus.allocationpolicies.VmAllocationPolicySimple;
@@ -26,7 +27,6 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.Logger;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Description:
@@ -53,7 +53,7 @@ public class simulation_test {
 
     public void run(){
         CloudSimPlus simulation = new CloudSimPlus(0.001);
-        GlobalBrokerRandom globalBroker = new GlobalBrokerRandom(simulation);
+        PlacementBroker globalBroker = new PlacementBroker(simulation, new RandomPlacement());
         List<Datacenter> datacenters = new ArrayList<>();
         List<DatacenterBrokerSimple> brokers = new ArrayList<>();
 
@@ -65,18 +65,20 @@ public class simulation_test {
 
             DatacenterBrokerSimple broker = new DatacenterBrokerSimple(simulation);
             brokers.add(broker);
+            globalBroker.addLocalBrokerWithDatacenter(broker, dc);
         }
-        globalBroker.addLocalBrokers(brokers);
 
         List<Vm> vms = createVms();
-        globalBroker.setVmList(vms);
+        for (int i = 0; i < vms.size(); i++) {
+            brokers.get(i % brokers.size()).submitVm(vms.get(i));
+        }
 
         List<TimedCloudlet> cloudlets = new_read.loadTimedCloudletsFromCSV(
                 config.getCloudletFile(),
                 config.getCloudlets()
         );
+        globalBroker.setTimedCloudlets(cloudlets);
 
-        scheduleCloudlets(simulation, globalBroker, cloudlets);
         simulation.start();
         printStats(datacenters, brokers);
 
@@ -147,25 +149,6 @@ public class simulation_test {
     }
 
 
-    private void scheduleCloudlets(CloudSimPlus sim, GlobalBrokerRandom globalBroker, List<TimedCloudlet> cloudlets) {
-        List<TimedCloudlet> submitted = new ArrayList<>();
-
-        sim.addOnClockTickListener(info -> {
-            double now = sim.clock();
-
-            List<TimedCloudlet> toSubmit = cloudlets.stream()
-                    .filter(tc -> !submitted.contains(tc) && tc.getSubmissionTime() <= now)
-                    .collect(Collectors.toList());
-
-            for (TimedCloudlet tc : toSubmit) {
-                Cloudlet cl = tc.getCloudlet();
-                globalBroker.submitCloudlet(cl);
-                submitted.add(tc);
-                System.out.printf("Cloudlet %d submitted at %.2f\n", cl.getId(), now);
-            }
-        });
-    }
-
     private void printStats(List<Datacenter> dcs, List<DatacenterBrokerSimple> brokers) {
         double totalGreen = 0, totalBrown = 0, makespan = 0, executionTime = 0, totalGreenInitial = 0, totalGeneration = 0;
         for (Datacenter dc : dcs) {